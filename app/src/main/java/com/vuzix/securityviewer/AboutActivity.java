@@ -45,11 +45,19 @@ import android.widget.TextView;
 import androidx.annotation.Nullable;
 
 import com.vuzix.hud.actionmenu.ActionMenuActivity;
+import com.vuzix.securityviewer.model.Camera;
+import com.vuzix.securityviewer.model.StartupLatencyBucket;
+import com.vuzix.securityviewer.utils.AppExecutors;
+import com.vuzix.securityviewer.utils.LatencyHistogram;
+import com.vuzix.securityviewer.utils.TaskScope;
 
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 
 public class AboutActivity extends ActionMenuActivity {
@@ -58,6 +66,8 @@ public class AboutActivity extends ActionMenuActivity {
 
     private TextView headerPageTitle;
     private TextView versionText;
+    private TextView startupLatencyText;
+    private final TaskScope tasks = new TaskScope();
 
     public  static final License[]  Licenses = new License[] {
         new License("Vuzix General License, Version 1.0", "VZX", "vuzix_license", "Security Viewer"),
@@ -75,6 +85,7 @@ public class AboutActivity extends ActionMenuActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_about);
         versionText = findViewById(R.id.about_version);
+        startupLatencyText = findViewById(R.id.about_startup_latency);
         headerPageTitle = findViewById(R.id.header_page_title);
 
         headerPageTitle.setText(pageTitle);
@@ -86,9 +97,56 @@ public class AboutActivity extends ActionMenuActivity {
         }
 
         legal_ThirdParty();
+        loadStartupLatency();
 
     }
 
+    /**
+     * Used to cancel loading the startup latencies
+     */
+    @Override
+    protected void onDestroy() {
+        tasks.cancel();
+        super.onDestroy();
+    }
+
+    /**
+     * Reads the time-to-first-frame histograms on the I/O lane and shows p50/p95/p99 per camera
+     */
+    private void loadStartupLatency() {
+        tasks.run(AppExecutors.Lane.IO, () -> {
+            List<Camera> cameras = CameraRepository.getInstance(this).getCameras();
+            List<StartupLatencyBucket> buckets = CamerasDatabase.getInstance(this).getStartupLatencyDAO().getBuckets();
+
+            Map<Integer, LatencyHistogram> histograms = new LinkedHashMap<>();
+            for (StartupLatencyBucket bucket : buckets) {
+                LatencyHistogram histogram = histograms.get(bucket.getCameraUID());
+                if (histogram == null) {
+                    histogram = new LatencyHistogram();
+                    histograms.put(bucket.getCameraUID(), histogram);
+                }
+                histogram.add(bucket.getBucket(), bucket.getCount());
+            }
+
+            StringBuilder latencies = new StringBuilder(getString(R.string.tv_about_startup_title));
+            if (histograms.isEmpty()) {
+                latencies.append("\n").append(getString(R.string.tv_about_startup_empty));
+            }
+            for (Camera camera : cameras) {
+                LatencyHistogram histogram = histograms.get(camera.getUID());
+                if (histogram != null) {
+                    latencies.append("\n").append(getString(R.string.tv_about_startup_row,
+                            camera.getPresentableName(),
+                            histogram.getPercentile(50) / 1000.0,
+                            histogram.getPercentile(95) / 1000.0,
+                            histogram.getPercentile(99) / 1000.0,
+                            histogram.getTotal()));
+                }
+            }
+            tasks.postToMain(() -> startupLatencyText.setText(latencies.toString()));
+        });
+    }
+
     public void legal_ThirdParty() {
 
         //TODO: Add Recursive File reading and add to TextView
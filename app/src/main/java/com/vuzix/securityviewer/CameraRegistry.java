@@ -0,0 +1,262 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.vuzix.securityviewer.model.Camera;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Immutable index of the subscribed cameras by host, serial number and MAC address, so matching a
+ * discovered device against the database is a hash lookup instead of a scan of every camera. A
+ * registry never changes after it's built and can be read from any thread, CameraRepository builds
+ * a new one whenever the cameras change. Cameras subscribed under a DNS name are also indexed by
+ * the addresses it resolves to, as discovery reports cameras by IP address, so a registry has to be
+ * built off the main thread. Resolved addresses are kept for RESOLVE_TTL so rebuilding the registry
+ * after every write doesn't repeat the lookups
+ */
+public class CameraRegistry {
+
+    private static final String TAG = "CameraRegistry";
+    private static final String DEFAULT_HTTP_PORT = ":80";
+    private static final long RESOLVE_TTL = 10 * 60 * 1000;
+
+    private static final ConcurrentHashMap<String, ResolvedHost> resolvedHosts = new ConcurrentHashMap<>();
+
+    private final Map<String, Camera> camerasByHost;
+    private final Map<String, Camera> camerasBySerialNumber;
+    private final Map<String, Camera> camerasByMacAddress;
+
+    /**
+     * Constructor for CameraRegistry, indexes the given cameras
+     * @param cameras Cameras to index
+     */
+    public CameraRegistry(List<Camera> cameras) {
+        Map<String, Camera> byHost = new HashMap<>();
+        Map<String, Camera> bySerialNumber = new HashMap<>();
+        Map<String, Camera> byMacAddress = new HashMap<>();
+        for (Camera camera : cameras) {
+            String hostKey = normalizeHost(camera.getHostName());
+            putIfKeyed(byHost, hostKey, camera);
+            for (String addressKey : resolveHost(hostKey)) {
+                putIfKeyed(byHost, addressKey, camera);
+            }
+            putIfKeyed(bySerialNumber, normalizeKey(camera.getSerialNumber()), camera);
+            putIfKeyed(byMacAddress, normalizeMacAddress(camera.getMacAddress()), camera);
+        }
+        camerasByHost = Collections.unmodifiableMap(byHost);
+        camerasBySerialNumber = Collections.unmodifiableMap(bySerialNumber);
+        camerasByMacAddress = Collections.unmodifiableMap(byMacAddress);
+    }
+
+    /**
+     * Get the subscribed camera at a host. "http://192.168.1.20", "192.168.1.20:80" and
+     * "192.168.1.20/" all name the same host
+     * @param hostName Host name with or without scheme and port
+     * @return Matching camera or null
+     */
+    public Camera findByHost(String hostName) {
+        String key = normalizeHost(hostName);
+        return key == null ? null : camerasByHost.get(key);
+    }
+
+    /**
+     * Get the subscribed camera with a serial number
+     * @param serialNumber Serial number reported by the camera
+     * @return Matching camera or null
+     */
+    public Camera findBySerialNumber(String serialNumber) {
+        String key = normalizeKey(serialNumber);
+        return key == null ? null : camerasBySerialNumber.get(key);
+    }
+
+    /**
+     * Get the subscribed camera with a MAC address, separators and case are ignored
+     * @param macAddress MAC address of the camera
+     * @return Matching camera or null
+     */
+    public Camera findByMacAddress(String macAddress) {
+        String key = normalizeMacAddress(macAddress);
+        return key == null ? null : camerasByMacAddress.get(key);
+    }
+
+    /**
+     * Get the subscribed camera matching any of the host, serial number or MAC address of a camera,
+     * the same identities Camera.equals compares
+     * @param camera Camera to match
+     * @return Matching camera or null
+     */
+    public Camera find(Camera camera) {
+        Camera match = findByHost(camera.getHostName());
+        if (match == null) {
+            match = findBySerialNumber(camera.getSerialNumber());
+        }
+        if (match == null) {
+            match = findByMacAddress(camera.getMacAddress());
+        }
+        return match;
+    }
+
+    /**
+     * Get the number of cameras with a host
+     * @return Number of indexed hosts
+     */
+    public int size() {
+        return camerasByHost.size();
+    }
+
+    /**
+     * Adds a camera to an index unless its key is missing, the first camera with a key wins
+     * @param index Index to add to
+     * @param key Normalized key of the camera
+     * @param camera Camera to add
+     */
+    private static void putIfKeyed(Map<String, Camera> index, String key, Camera camera) {
+        if (key != null && !index.containsKey(key)) {
+            index.put(key, camera);
+        }
+    }
+
+    /**
+     * Normalizes a host name to its host and non-default port
+     * @param hostName Host name with or without scheme and port
+     * @return Normalized host, null if empty
+     */
+    private static String normalizeHost(String hostName) {
+        String key = normalizeKey(hostName);
+        if (key == null) {
+            return null;
+        }
+        int schemeEnd = key.indexOf("://");
+        if (schemeEnd != -1) {
+            key = key.substring(schemeEnd + 3);
+        }
+        int pathStart = key.indexOf('/');
+        if (pathStart != -1) {
+            key = key.substring(0, pathStart);
+        }
+        if (key.endsWith(DEFAULT_HTTP_PORT)) {
+            key = key.substring(0, key.length() - DEFAULT_HTTP_PORT.length());
+        }
+        return key.isEmpty() ? null : key;
+    }
+
+    /**
+     * Resolves the name of a normalized host to its addresses, keeping the port. Answers are
+     * reused until they are older than RESOLVE_TTL
+     * @param hostKey Normalized host
+     * @return Normalized hosts of every address, empty for IP addresses or names that don't resolve
+     */
+    private static List<String> resolveHost(String hostKey) {
+        if (hostKey == null) {
+            return Collections.emptyList();
+        }
+        int portStart = hostKey.lastIndexOf(':');
+        String host = portStart == -1 ? hostKey : hostKey.substring(0, portStart);
+        String port = portStart == -1 ? "" : hostKey.substring(portStart);
+        if (host.matches("[0-9.]+") || host.contains(":") || host.startsWith("[")) {
+            return Collections.emptyList();
+        }
+        ResolvedHost resolvedHost = resolvedHosts.get(hostKey);
+        long now = SystemClock.elapsedRealtime();
+        if (resolvedHost != null && now - resolvedHost.resolvedAt < RESOLVE_TTL) {
+            return resolvedHost.addressKeys;
+        }
+        List<String> addressKeys = new ArrayList<>();
+        try {
+            for (InetAddress address : InetAddress.getAllByName(host)) {
+                addressKeys.add(address.getHostAddress() + port);
+            }
+        } catch (UnknownHostException e) {
+            Log.d(TAG, "Could not resolve " + host + ": " + e.getMessage());
+        }
+        resolvedHosts.put(hostKey, new ResolvedHost(Collections.unmodifiableList(addressKeys), now));
+        return addressKeys;
+    }
+
+    /**
+     * Normalizes a MAC address to its hex digits
+     * @param macAddress MAC address in any notation
+     * @return Normalized MAC address, null if empty
+     */
+    private static String normalizeMacAddress(String macAddress) {
+        String key = normalizeKey(macAddress);
+        if (key == null) {
+            return null;
+        }
+        key = key.replaceAll("[^0-9a-f]", "");
+        return key.isEmpty() ? null : key;
+    }
+
+    /**
+     * Trims and lowercases a key
+     * @param value Raw value
+     * @return Normalized key, null if empty
+     */
+    private static String normalizeKey(String value) {
+        if (value == null) {
+            return null;
+        }
+        String key = value.trim().toLowerCase(Locale.US);
+        return key.isEmpty() ? null : key;
+    }
+
+    /**
+     * Addresses a host name resolved to and when
+     */
+    private static class ResolvedHost {
+
+        private final List<String> addressKeys;
+        private final long resolvedAt;
+
+        /**
+         * Constructor for ResolvedHost
+         * @param addressKeys Normalized hosts of every address
+         * @param resolvedAt Time of the lookup, from SystemClock.elapsedRealtime
+         */
+        ResolvedHost(List<String> addressKeys, long resolvedAt) {
+            this.addressKeys = addressKeys;
+            this.resolvedAt = resolvedAt;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer;
+
+import android.content.Context;
+
+import com.vuzix.securityviewer.dao.CamerasDAO;
+import com.vuzix.securityviewer.model.Camera;
+import com.vuzix.securityviewer.utils.ThumbnailLoader;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Process-wide access to the subscribed cameras. The camera list is read from the database once
+ * and kept in memory, together with a CameraRegistry indexing it, until a camera is added, updated
+ * or deleted through the repository, so going back to the home carousel doesn't hit SQLite. All
+ * methods block and have to be called off the main thread
+ */
+public class CameraRepository {
+
+    private static CameraRepository instance;
+
+    private final CamerasDAO camerasDAO;
+    private final ThumbnailLoader thumbnailLoader;
+    private List<Camera> cameras;
+    private CameraRegistry registry;
+    private int version;
+
+    /**
+     * Constructor for CameraRepository
+     * @param database Database holding the cameras
+     * @param thumbnailLoader Thumbnail cache cleared for deleted cameras
+     */
+    private CameraRepository(CamerasDatabase database, ThumbnailLoader thumbnailLoader) {
+        this.camerasDAO = database.getCameraDAO();
+        this.thumbnailLoader = thumbnailLoader;
+    }
+
+    /**
+     * Get the process-wide camera repository
+     * @param context Any context, used to open the database on first use
+     * @return CameraRepository instance
+     */
+    public static synchronized CameraRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new CameraRepository(CamerasDatabase.getInstance(context),
+                    ThumbnailLoader.getInstance(context));
+        }
+        return instance;
+    }
+
+    /**
+     * Get all subscribed cameras, read from the database only if the list changed since the last
+     * call. The returned list is a copy the caller may reorder, the cameras in it are shared
+     * @return List of cameras
+     */
+    public synchronized List<Camera> getCameras() {
+        if (cameras == null) {
+            cameras = camerasDAO.getCameras();
+        }
+        return new ArrayList<>(cameras);
+    }
+
+    /**
+     * Get the subscribed cameras indexed by host, serial number and MAC address, built only if the
+     * list changed since the last call. Building a registry may resolve host names, so it's built
+     * from a snapshot outside the lock and only kept if no write happened in the meantime
+     * @return Registry of the current cameras
+     */
+    public CameraRegistry getRegistry() {
+        List<Camera> snapshot;
+        int snapshotVersion;
+        synchronized (this) {
+            if (registry != null) {
+                return registry;
+            }
+            if (cameras == null) {
+                cameras = camerasDAO.getCameras();
+            }
+            snapshot = new ArrayList<>(cameras);
+            snapshotVersion = version;
+        }
+        CameraRegistry builtRegistry = new CameraRegistry(snapshot);
+        synchronized (this) {
+            if (snapshotVersion == version) {
+                registry = builtRegistry;
+            }
+        }
+        return builtRegistry;
+    }
+
+    /**
+     * Get a specific camera, always read from the database so callers can edit it freely
+     * @param uid UID of the camera
+     * @return Camera matching the UID, null if not found
+     */
+    public Camera getCamera(int uid) {
+        return camerasDAO.getCamera(uid);
+    }
+
+    /**
+     * Adds a camera and invalidates the camera list
+     * @param camera Camera to add
+     */
+    public synchronized void add(Camera camera) {
+        camerasDAO.add(camera);
+        invalidate();
+    }
+
+    /**
+     * Updates a camera and invalidates the camera list
+     * @param camera Camera to update
+     */
+    public synchronized void update(Camera camera) {
+        camerasDAO.update(camera);
+        invalidate();
+    }
+
+    /**
+     * Deletes a camera, invalidates the camera list and drops its thumbnail
+     * @param camera Camera to delete
+     */
+    public synchronized void delete(Camera camera) {
+        camerasDAO.delete(camera);
+        invalidate();
+        thumbnailLoader.remove(camera.getUID());
+    }
+
+    /**
+     * Drops the cached list and registry after a write
+     */
+    private void invalidate() {
+        cameras = null;
+        registry = null;
+        version++;
+    }
+}
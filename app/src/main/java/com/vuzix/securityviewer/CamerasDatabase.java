@@ -31,18 +31,142 @@ EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
  */
 package com.vuzix.securityviewer;
 
+import android.content.Context;
+
+import androidx.annotation.NonNull;
 import androidx.room.Database;
+import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
 import com.vuzix.securityviewer.dao.CamerasDAO;
+import com.vuzix.securityviewer.dao.DiscoveredDeviceDAO;
+import com.vuzix.securityviewer.dao.StartupLatencyDAO;
+import com.vuzix.securityviewer.dao.StreamCacheDAO;
 import com.vuzix.securityviewer.model.Camera;
+import com.vuzix.securityviewer.model.DiscoveredDevice;
+import com.vuzix.securityviewer.model.StartupLatencyBucket;
+import com.vuzix.securityviewer.model.StreamCache;
 
-@Database(entities = {Camera.class}, version = 1)
+@Database(entities = {Camera.class, StreamCache.class, StartupLatencyBucket.class, DiscoveredDevice.class}, version = 7)
 public abstract class CamerasDatabase extends RoomDatabase {
 
+    /**
+     * Version 2 adds the stream_cache table holding the last resolved stream URI per camera
+     */
+    public static final Migration MIGRATION_1_2 = new Migration(1, 2) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `stream_cache` (`cameraUID` INTEGER NOT NULL, "
+                    + "`profileToken` TEXT, `streamUri` TEXT, `resolvedAt` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`cameraUID`), FOREIGN KEY(`cameraUID`) REFERENCES `cameras`(`UID`) "
+                    + "ON UPDATE NO ACTION ON DELETE CASCADE )");
+        }
+    };
+
+    /**
+     * Version 3 adds the per-camera media profile override
+     */
+    public static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `cameras` ADD COLUMN `streamProfileToken` TEXT");
+        }
+    };
+
+    /**
+     * Version 4 adds the startup_latency table holding the time-to-first-frame histogram per camera
+     */
+    public static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `startup_latency` (`cameraUID` INTEGER NOT NULL, "
+                    + "`bucket` INTEGER NOT NULL, `count` INTEGER NOT NULL, PRIMARY KEY(`cameraUID`, `bucket`), "
+                    + "FOREIGN KEY(`cameraUID`) REFERENCES `cameras`(`UID`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+        }
+    };
+
+    /**
+     * Version 5 adds the network caching learned per camera to stream_cache
+     */
+    public static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `stream_cache` ADD COLUMN `networkCaching` INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    /**
+     * Version 6 adds the stream encoding and the decoder path that produced frames to stream_cache
+     */
+    public static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("ALTER TABLE `stream_cache` ADD COLUMN `encoding` TEXT");
+            database.execSQL("ALTER TABLE `stream_cache` ADD COLUMN `decoderPath` INTEGER NOT NULL DEFAULT 0");
+        }
+    };
+
+    /**
+     * Version 7 adds the discovered_devices table caching unsubscribed cameras per SSID
+     */
+    public static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase database) {
+            database.execSQL("CREATE TABLE IF NOT EXISTS `discovered_devices` (`ssid` TEXT NOT NULL, "
+                    + "`hostName` TEXT NOT NULL, `locked` INTEGER NOT NULL, `model` TEXT, `firmwareVersion` TEXT, "
+                    + "`hardwareID` TEXT, `manufacturer` TEXT, `serialNumber` TEXT, `lastSeen` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`ssid`, `hostName`))");
+        }
+    };
+
+    /**
+     * Every migration, passed to each database builder
+     */
+    public static final Migration[] MIGRATIONS = {MIGRATION_1_2, MIGRATION_2_3, MIGRATION_3_4, MIGRATION_4_5,
+            MIGRATION_5_6, MIGRATION_6_7};
+
+    private static final String DATABASE_NAME = "camerasDB";
+
+    private static CamerasDatabase instance;
+
+    /**
+     * Get the process-wide database, opened on first use and never closed so screens don't
+     * reopen SQLite on every transition
+     * @param context Any context, the application context is retained
+     * @return CamerasDatabase instance
+     */
+    public static synchronized CamerasDatabase getInstance(Context context) {
+        if (instance == null) {
+            instance = Room.databaseBuilder(context.getApplicationContext(), CamerasDatabase.class, DATABASE_NAME)
+                    .addMigrations(MIGRATIONS)
+                    .build();
+        }
+        return instance;
+    }
+
     /**
      * Method for retrieving the DAO
      * @return CameraDAO
      */
     public abstract CamerasDAO getCameraDAO();
+
+    /**
+     * Method for retrieving the stream cache DAO
+     * @return StreamCacheDAO
+     */
+    public abstract StreamCacheDAO getStreamCacheDAO();
+
+    /**
+     * Method for retrieving the startup latency DAO
+     * @return StartupLatencyDAO
+     */
+    public abstract StartupLatencyDAO getStartupLatencyDAO();
+
+    /**
+     * Method for retrieving the discovered device DAO
+     * @return DiscoveredDeviceDAO
+     */
+    public abstract DiscoveredDeviceDAO getDiscoveredDeviceDAO();
 }
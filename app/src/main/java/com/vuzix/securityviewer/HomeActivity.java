@@ -40,7 +40,6 @@ import android.net.ConnectivityManager;
 import android.net.Network;
 import android.net.NetworkInfo;
 import android.net.wifi.WifiManager;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.os.RemoteException;
 import android.preference.PreferenceManager;
@@ -55,19 +54,23 @@ import android.widget.Toast;
 import androidx.annotation.Nullable;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
-import androidx.room.Room;
 
 import com.vuzix.hud.actionmenu.ActionMenuActivity;
 import com.vuzix.hud.actionmenu.DefaultActionMenuItemView;
 import com.vuzix.securityviewer.model.Camera;
 import com.vuzix.securityviewer.settings.DiscoverCameras;
 import com.vuzix.securityviewer.settings.Manage;
+import com.vuzix.securityviewer.utils.AppExecutors;
 import com.vuzix.securityviewer.utils.CameraCardAdapter;
+import com.vuzix.securityviewer.utils.CameraHealthMonitor;
+import com.vuzix.securityviewer.utils.StreamPrefetcher;
+import com.vuzix.securityviewer.utils.TaskScope;
+import com.vuzix.securityviewer.utils.VoiceVocabulary;
 import com.vuzix.sdk.speechrecognitionservice.VuzixSpeechClient;
 
-import java.lang.ref.WeakReference;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 import static android.view.KeyEvent.ACTION_DOWN;
 import static android.view.KeyEvent.KEYCODE_BACK;
@@ -90,11 +93,13 @@ public class HomeActivity extends ActionMenuActivity {
     private TextView noCamerasTextView;
     private TextView optionsTextView;
     private RecyclerView cameraRecyclerView;
+    private CameraCardAdapter cameraCardAdapter;
 
     private MenuItem manageCameras;
     private boolean manageCamerasShouldBeVisible = false;
 
     private MenuItem allowCameraAudio;
+    private MenuItem healthCheck;
     private SwitchMenuItemView switchAudioMenuItemView;
 
     private List<Camera> cameraList;
@@ -102,6 +107,8 @@ public class HomeActivity extends ActionMenuActivity {
 
     private HashMap<String, Camera> cameraSubstitutionMap;
 
+    private final TaskScope tasks = new TaskScope();
+
     boolean actionMenuOpen = false;
 
 
@@ -122,6 +129,9 @@ public class HomeActivity extends ActionMenuActivity {
         networkInfoText = findViewById(R.id.header_network);
         TextView headerPageTitle = findViewById(R.id.header_page_title);
         cameraRecyclerView = findViewById(R.id.rv_home_cameras);
+        cameraCardAdapter = new CameraCardAdapter();
+        cameraRecyclerView.setAdapter(cameraCardAdapter);
+        cameraRecyclerView.setLayoutManager(new LinearLayoutManager(this, LinearLayoutManager.HORIZONTAL, true));
         noCamerasTextView = findViewById(R.id.tv_home_no_cameras);
         optionsTextView = findViewById(R.id.tv_home_options);
         currentCameraIndex = 0;
@@ -142,12 +152,22 @@ public class HomeActivity extends ActionMenuActivity {
     protected void onResume() {
         Log.d(getString(pageTitle), "OnResume");
         updateCurrentNetwork();
-        currentCameraIndex = 0;
-        LoadCamerasTask loadCamerasTask = new LoadCamerasTask(this);
-        loadCamerasTask.execute();
+        loadCameras();
         super.onResume();
     }
 
+    /**
+     * Used to stop prefetching cameras that have not been started yet once the user leaves and log
+     * how busy the executor lanes have been
+     */
+    @Override
+    protected void onPause() {
+        StreamPrefetcher.getInstance(this).cancel();
+        CameraHealthMonitor.getInstance().stop();
+        AppExecutors.getInstance().logMetrics();
+        super.onPause();
+    }
+
     /**
      * Called when action menu is created, initializes menu items and hide "Done" if not coming from
      * FTUE
@@ -167,6 +187,7 @@ public class HomeActivity extends ActionMenuActivity {
         manageCameras.setIntent(new Intent(this, Manage.class));
         allowCameraAudio = menu.findItem(R.id.menu_item_settings_audio);
         allowCameraAudio.setActionView(switchAudioMenuItemView = new SwitchMenuItemView(this));
+        healthCheck = menu.findItem(R.id.menu_item_home_health_check);
         menu.findItem(R.id.menu_item_home_help)
                 .setIntent(new Intent(this, HelpActivity.class));
         menu.findItem(R.id.menu_item_home_about)
@@ -177,6 +198,7 @@ public class HomeActivity extends ActionMenuActivity {
 
     private void updateMenuItems() {
         setupAudioOption();
+        updateHealthCheckMenuItem();
     }
 
     /**
@@ -230,6 +252,23 @@ public class HomeActivity extends ActionMenuActivity {
         editor.apply();
     }
 
+    /**
+     * Called when "Mosaic" is pressed, shows the cameras of the carousel in a grid
+     * @param item Menu item that was pressed
+     */
+    public void openMosaic(MenuItem item) {
+        if (cameraList == null || cameraList.isEmpty()) {
+            return;
+        }
+        int[] carouselUIDs = new int[cameraList.size()];
+        for (int i = 0; i < cameraList.size(); i++) {
+            carouselUIDs[i] = cameraList.get(i).getUID();
+        }
+        Intent intent = new Intent(this, MosaicActivity.class);
+        intent.putExtra(StreamActivity.EXTRA_CAROUSEL, carouselUIDs);
+        startActivity(intent);
+    }
+
     /**
      * Handler for swapping audio options for camera
      */
@@ -255,6 +294,28 @@ public class HomeActivity extends ActionMenuActivity {
         editor.apply();
     }
 
+    /**
+     * Called when "ONVIF Health Check" is pressed, toggles the GetSystemDateAndTime call that
+     * follows the port check of every camera and remembers the choice
+     * @param item Menu item that was pressed
+     */
+    public void toggleHealthCheck(MenuItem item) {
+        SharedPreferences pref = PreferenceManager.getDefaultSharedPreferences(getContext());
+        boolean enabled = !pref.getBoolean("healthCheckSoap", false);
+        pref.edit().putBoolean("healthCheckSoap", enabled).apply();
+        CameraHealthMonitor.getInstance().setSoapCheckEnabled(enabled);
+        updateHealthCheckMenuItem();
+    }
+
+    /**
+     * Updates the health check menu item to match the stored choice
+     */
+    private void updateHealthCheckMenuItem() {
+        SharedPreferences pref = PreferenceManager.getDefaultSharedPreferences(getContext());
+        healthCheck.setTitle(pref.getBoolean("healthCheckSoap", false)
+                ? R.string.menu_item_home_health_check_on : R.string.menu_item_home_health_check_off);
+    }
+
     /**
      * Sets the default menu item for the action menu
      *
@@ -288,12 +349,13 @@ public class HomeActivity extends ActionMenuActivity {
     }
 
     /**
-     * Used to unregister our wifi and SpeechRecognizer receivers
+     * Used to unregister our wifi and SpeechRecognizer receivers and cancel background work
      */
     @Override
     protected void onDestroy() {
         unregisterReceiver(wifiReceiver);
         unregisterReceiver(voiceCmdReceiver);
+        tasks.cancel();
         super.onDestroy();
     }
 
@@ -310,7 +372,7 @@ public class HomeActivity extends ActionMenuActivity {
                 case KEYCODE_DPAD_CENTER:
                 case KEYCODE_ENTER:
                     if (cameraList.size() != 0 && !actionMenuOpen) {
-                        cameraList.get(currentCameraIndex).openStream(this);
+                        cameraList.get(currentCameraIndex).openStream(this, cameraList);
                     }
                     break;
                 case KEYCODE_MENU:
@@ -323,22 +385,18 @@ public class HomeActivity extends ActionMenuActivity {
                 case KEYCODE_DPAD_LEFT:
                     if (cameraList != null && !actionMenuOpen) {
                         if (currentCameraIndex < cameraList.size() - 1) {
-                            cameraList.get(currentCameraIndex).setSelected(false);
                             currentCameraIndex++;
                             cameraRecyclerView.smoothScrollToPosition(currentCameraIndex);
-                            cameraList.get(currentCameraIndex).setSelected(true);
-                            cameraRecyclerView.getAdapter().notifyDataSetChanged();
+                            cameraCardAdapter.setSelectedPosition(currentCameraIndex);
                         }
                     }
                     break;
                 case KEYCODE_DPAD_RIGHT:
                     if (cameraList != null && !actionMenuOpen) {
                         if (currentCameraIndex > 0) {
-                            cameraList.get(currentCameraIndex).setSelected(false);
                             currentCameraIndex--;
                             cameraRecyclerView.smoothScrollToPosition(currentCameraIndex);
-                            cameraList.get(currentCameraIndex).setSelected(true);
-                            cameraRecyclerView.getAdapter().notifyDataSetChanged();
+                            cameraCardAdapter.setSelectedPosition(currentCameraIndex);
                         }
                     }
                     break;
@@ -406,32 +464,23 @@ public class HomeActivity extends ActionMenuActivity {
     }
 
     /**
-     * Initializes the SpeechRecognizer, removes all phrases and adds back the wake/sleep phrases
-     * After, we add all the camera nicknames/titles to the vocabulary
+     * Maps the camera nicknames/titles to their substitutions and hands them to the shared
+     * vocabulary, which only sends the phrases that changed since the last time
      */
     private void initVoiceVocabulary() {
-        try {
-            VuzixSpeechClient vuzixSpeechClient = new VuzixSpeechClient(this);
-            vuzixSpeechClient.deletePhrase("*");
-            vuzixSpeechClient.insertWakeWordPhrase("hello vuzix");    // Add "hello vuzix" wake-up phrase for consistency
-            vuzixSpeechClient.insertWakeWordPhrase("start security viewer");      // Add application specific wake-up phrase
-
-            vuzixSpeechClient.insertVoiceOffPhrase("voice off");      // Add-back the default phrase for consistency
-            vuzixSpeechClient.insertVoiceOffPhrase("privacy please"); // Add application specific stop listening phrase
-            for (Camera camera : cameraList) {
-                // We'll add three trigger words to the beginning of each camera: "View", "Go to", "Open"
-                int[] stringIds = {R.string.speech_view, R.string.speech_goto, R.string.speech_open};
-                for (int eachStringId : stringIds) {
-                    String cameraPhrase = getString(eachStringId, camera.getPresentableName());
-                    String cameraSubstitution = cameraPhrase.replace(" ", "_").toLowerCase();
-                    cameraSubstitutionMap.put(cameraSubstitution, camera);
-                    vuzixSpeechClient.insertPhrase(cameraPhrase, cameraSubstitution);
-                }
+        cameraSubstitutionMap.clear();
+        Map<String, String> cameraPhrases = new HashMap<>();
+        for (Camera camera : cameraList) {
+            // We'll add three trigger words to the beginning of each camera: "View", "Go to", "Open"
+            int[] stringIds = {R.string.speech_view, R.string.speech_goto, R.string.speech_open};
+            for (int eachStringId : stringIds) {
+                String cameraPhrase = getString(eachStringId, camera.getPresentableName());
+                String cameraSubstitution = cameraPhrase.replace(" ", "_").toLowerCase();
+                cameraSubstitutionMap.put(cameraSubstitution, camera);
+                cameraPhrases.put(cameraPhrase, cameraSubstitution);
             }
-            Log.d(getString(pageTitle), vuzixSpeechClient.dump());
-        } catch (Exception e) {
-            Log.e(getString(pageTitle), e.getMessage());
         }
+        VoiceVocabulary.getInstance(this).syncCameraPhrases(cameraPhrases);
     }
 
     private BroadcastReceiver voiceCmdReceiver = new BroadcastReceiver() {
@@ -447,7 +496,7 @@ public class HomeActivity extends ActionMenuActivity {
                             Camera summonedCamera = cameraSubstitutionMap.get(phrase);
                             if (summonedCamera != null) {
                                 Toast.makeText(getApplicationContext(), getString(R.string.toast_home_speech_open, summonedCamera.getPresentableName()), Toast.LENGTH_SHORT).show();
-                                summonedCamera.openStream(getApplicationContext());
+                                summonedCamera.openStream(getApplicationContext(), cameraList);
                             }
                         }
                     }
@@ -456,59 +505,45 @@ public class HomeActivity extends ActionMenuActivity {
         }
     };
 
-    private static class LoadCamerasTask extends AsyncTask<Void, Void, Void> {
-
-        CamerasDatabase database;
-        private WeakReference<HomeActivity> homeReference;
-
-        /**
-         * Constructor for LoadCamerasTask, connects to database and creates a weak reference to the
-         * HomeActivity
-         *
-         * @param context Context of HomeActivity executing the task
-         */
-        LoadCamerasTask(HomeActivity context) {
-            homeReference = new WeakReference<>(context);
-            database = Room.databaseBuilder(context, CamerasDatabase.class, "camerasDB")
-                    .build();
-        }
+    /**
+     * Loads existing cameras from the database on the I/O lane
+     */
+    private void loadCameras() {
+        tasks.run(AppExecutors.Lane.IO, () -> {
+            List<Camera> cameras = CameraRepository.getInstance(this).getCameras();
+            tasks.postToMain(() -> onCamerasLoaded(cameras));
+        });
+    }
 
-        /**
-         * Work to be done in the background, need to load existing cameras from database
-         *
-         * @param voids Not used, null
-         * @return Null
-         */
-        @Override
-        protected Void doInBackground(Void... voids) {
-            HomeActivity homeActivity = homeReference.get();
-            if (homeActivity != null && !homeActivity.isFinishing()) {
-                homeActivity.cameraList = database.getCameraDAO().getCameras();
-            }
-            return null;
+    /**
+     * Executed on cameras loaded, hands our cameras to the carousel adapter and starts
+     * resolving their stream URIs
+     *
+     * @param cameras Cameras read from the database
+     */
+    private void onCamerasLoaded(List<Camera> cameras) {
+        if (isFinishing()) {
+            return;
         }
-
-        /**
-         * Executed on cameras loaded, initializes the recycler view with our cameras
-         *
-         * @param aVoid Null
-         */
-        @Override
-        protected void onPostExecute(Void aVoid) {
-            HomeActivity homeActivity = homeReference.get();
-            if (homeActivity != null && !homeActivity.isFinishing()) {
-                if (homeActivity.cameraList.size() > 0) {
-                    homeActivity.cameraList.get(homeActivity.currentCameraIndex).setSelected(true);
-                    CameraCardAdapter cameraCardAdapter = new CameraCardAdapter(homeActivity.cameraList);
-                    homeActivity.cameraRecyclerView.setAdapter(cameraCardAdapter);
-                    homeActivity.cameraRecyclerView.setLayoutManager(new LinearLayoutManager(homeActivity, LinearLayoutManager.HORIZONTAL, true));
-                    homeActivity.onCameraListLoaded(true);
-                    homeActivity.initVoiceVocabulary();
-                } else {
-                    homeActivity.onCameraListLoaded(false);
-                }
-            }
-            database.close();
+        cameraList = cameras;
+        if (cameraList.size() > 0) {
+            // Keep the selection across resumes, unless the camera it pointed at was removed
+            currentCameraIndex = Math.min(currentCameraIndex, cameraList.size() - 1);
+            cameraCardAdapter.submitList(cameraList, () -> {
+                cameraCardAdapter.setSelectedPosition(currentCameraIndex);
+                cameraRecyclerView.scrollToPosition(currentCameraIndex);
+            });
+            onCameraListLoaded(true);
+            initVoiceVocabulary();
+            StreamPrefetcher.getInstance(this).prefetch(cameraList, currentCameraIndex);
+            CameraHealthMonitor.getInstance().setSoapCheckEnabled(PreferenceManager
+                    .getDefaultSharedPreferences(getContext()).getBoolean("healthCheckSoap", false));
+            CameraHealthMonitor.getInstance().watch(cameraList,
+                    (cameraUID, health) -> cameraCardAdapter.notifyHealthChanged(cameraUID));
+        } else {
+            cameraCardAdapter.submitList(cameraList);
+            onCameraListLoaded(false);
+            initVoiceVocabulary();
         }
     }
-}
\ No newline at end of file
+}
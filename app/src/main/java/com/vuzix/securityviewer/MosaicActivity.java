@@ -0,0 +1,279 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer;
+
+import android.os.Bundle;
+import android.util.Log;
+import android.view.KeyEvent;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.Window;
+import android.view.WindowManager;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+
+
+import com.vuzix.hud.actionmenu.ActionMenuActivity;
+import com.vuzix.securityviewer.model.Camera;
+import com.vuzix.securityviewer.utils.AppExecutors;
+import com.vuzix.securityviewer.utils.DecoderBudget;
+import com.vuzix.securityviewer.utils.MosaicTile;
+import com.vuzix.securityviewer.utils.TaskScope;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static android.view.KeyEvent.ACTION_DOWN;
+import static android.view.KeyEvent.KEYCODE_BACK;
+import static android.view.KeyEvent.KEYCODE_DPAD_CENTER;
+import static android.view.KeyEvent.KEYCODE_DPAD_DOWN;
+import static android.view.KeyEvent.KEYCODE_DPAD_LEFT;
+import static android.view.KeyEvent.KEYCODE_DPAD_RIGHT;
+import static android.view.KeyEvent.KEYCODE_DPAD_UP;
+import static android.view.KeyEvent.KEYCODE_ENTER;
+
+/**
+ * Shows up to nine cameras at once in a grid. Every tile streams the camera profile that best fits
+ * the tile, decoder sessions are handed out by a DecoderBudget so tiles beyond the budget show
+ * periodic snapshots instead. Selecting a tile shows it full screen while the others keep their
+ * sessions open in the background.
+ */
+public class MosaicActivity extends ActionMenuActivity {
+
+    private static final String TAG = "MosaicActivity";
+    private static final int MAX_TILES = 9;
+
+    private FrameLayout mosaicLayout;
+    private TextView headerPageTitle;
+    private CamerasDatabase database;
+    private DecoderBudget decoderBudget;
+    private final List<MosaicTile> tiles = new ArrayList<>();
+    private int columns = 1;
+    private int focusedIndex = 0;
+    private MosaicTile promotedTile;
+
+    private final TaskScope tasks = new TaskScope();
+
+    /**
+     * Called to set the views and load the cameras of the carousel
+     * @param savedInstanceState Not used, null
+     */
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+
+        requestWindowFeature(Window.FEATURE_NO_TITLE);
+        getWindow().setFlags(WindowManager.LayoutParams.FLAG_FULLSCREEN,
+                WindowManager.LayoutParams.FLAG_FULLSCREEN);
+        setContentView(R.layout.activity_mosaic);
+
+        mosaicLayout = findViewById(R.id.fl_mosaic);
+        headerPageTitle = findViewById(R.id.header_page_title);
+        headerPageTitle.setText(R.string.title_mosaic);
+        mosaicLayout.setKeepScreenOn(true);
+
+        database = CamerasDatabase.getInstance(this);
+        loadCameras(getIntent().getIntArrayExtra(StreamActivity.EXTRA_CAROUSEL));
+    }
+
+    /**
+     * Stops every tile and hands the players back to the pool
+     */
+    @Override
+    protected void onDestroy() {
+        tasks.cancel();
+        for (MosaicTile tile : tiles) {
+            tile.release();
+        }
+        tiles.clear();
+        super.onDestroy();
+    }
+
+    /**
+     * Loads the cameras to show and sizes the decoder budget to the device on the IO lane
+     * @param carouselUIDs Camera UIDs in carousel order
+     */
+    private void loadCameras(int[] carouselUIDs) {
+        if (carouselUIDs == null) {
+            finish();
+            return;
+        }
+        tasks.run(AppExecutors.Lane.IO, () -> {
+            DecoderBudget budget = DecoderBudget.forDevice();
+            List<Camera> cameras = new ArrayList<>();
+            for (int uid : carouselUIDs) {
+                Camera camera = CameraRepository.getInstance(this).getCamera(uid);
+                if (camera != null && cameras.size() < MAX_TILES) {
+                    cameras.add(camera);
+                }
+            }
+            tasks.postToMain(() -> {
+                decoderBudget = budget;
+                // Wait for the layout pass so the tiles can be sized to the mosaic
+                mosaicLayout.post(() -> onCamerasLoaded(cameras));
+            });
+        });
+    }
+
+    /**
+     * Called on the UI thread with the cameras to show, lays out the grid and starts every tile.
+     * Tiles are started in carousel order so the first cameras get the hardware decoder sessions
+     * @param cameras Cameras to show
+     */
+    private void onCamerasLoaded(List<Camera> cameras) {
+        if (cameras.isEmpty() || tasks.isCancelled()) {
+            finish();
+            return;
+        }
+        columns = (int) Math.ceil(Math.sqrt(cameras.size()));
+        LayoutInflater inflater = LayoutInflater.from(this);
+        for (Camera camera : cameras) {
+            View tileView = inflater.inflate(R.layout.layout_mosaic_tile, mosaicLayout, false);
+            mosaicLayout.addView(tileView);
+            tiles.add(new MosaicTile(tileView, camera, database, decoderBudget, tasks));
+        }
+        layoutTiles();
+        for (MosaicTile tile : tiles) {
+            tile.start(decoderBudget.acquire());
+        }
+        moveFocus(0);
+    }
+
+    /**
+     * Places every tile in its grid cell
+     */
+    private void layoutTiles() {
+        int rows = (int) Math.ceil(tiles.size() / (double) columns);
+        int tileWidth = mosaicLayout.getWidth() / columns;
+        int tileHeight = mosaicLayout.getHeight() / rows;
+        for (int i = 0; i < tiles.size(); i++) {
+            tiles.get(i).setBounds((i % columns) * tileWidth, (i / columns) * tileHeight, tileWidth, tileHeight);
+        }
+    }
+
+    /**
+     * Moves the focus to another tile, while a tile is full screen the newly focused tile replaces it
+     * @param step Number of tiles to move by, negative to move back
+     */
+    private void moveFocus(int step) {
+        if (tiles.isEmpty()) {
+            return;
+        }
+        int index = focusedIndex + step;
+        if (index < 0 || index >= tiles.size()) {
+            return;
+        }
+        tiles.get(focusedIndex).setFocused(false);
+        focusedIndex = index;
+        if (promotedTile != null) {
+            MosaicTile tile = tiles.get(focusedIndex);
+            tile.resume();
+            promote(tile);
+        } else {
+            tiles.get(focusedIndex).setFocused(true);
+        }
+    }
+
+    /**
+     * Shows a tile full screen, the other tiles are suspended but keep their streams open
+     * @param tile Tile to promote
+     */
+    private void promote(MosaicTile tile) {
+        Log.d(TAG, "Promoting " + tile.getCamera().getPresentableName());
+        promotedTile = tile;
+        for (MosaicTile other : tiles) {
+            if (other != tile) {
+                other.suspend();
+            }
+        }
+        tile.setFocused(false);
+        tile.setBounds(0, 0, mosaicLayout.getWidth(), mosaicLayout.getHeight());
+        headerPageTitle.setText(tile.getCamera().getPresentableName());
+    }
+
+    /**
+     * Returns the full screen tile to the grid and resumes the others
+     */
+    private void demote() {
+        promotedTile = null;
+        layoutTiles();
+        for (MosaicTile tile : tiles) {
+            tile.resume();
+        }
+        tiles.get(focusedIndex).setFocused(true);
+        headerPageTitle.setText(R.string.title_mosaic);
+    }
+
+    /**
+     * Method for navigating the mosaic, swipes move the focus and a tap shows the focused tile full
+     * screen or returns to the grid
+     * @param event KeyEvent from track-pad
+     * @return True for handling event
+     */
+    @Override
+    public boolean dispatchKeyEvent(KeyEvent event) {
+        if (event.getAction() == ACTION_DOWN) {
+            switch (event.getKeyCode()) {
+                case KEYCODE_DPAD_CENTER:
+                case KEYCODE_ENTER:
+                    if (promotedTile != null) {
+                        demote();
+                    } else if (!tiles.isEmpty()) {
+                        promote(tiles.get(focusedIndex));
+                    }
+                    break;
+                case KEYCODE_BACK:
+                    if (promotedTile != null) {
+                        demote();
+                    } else {
+                        finish();
+                    }
+                    break;
+                case KEYCODE_DPAD_RIGHT:
+                    moveFocus(1);
+                    break;
+                case KEYCODE_DPAD_LEFT:
+                    moveFocus(-1);
+                    break;
+                case KEYCODE_DPAD_DOWN:
+                    moveFocus(columns);
+                    break;
+                case KEYCODE_DPAD_UP:
+                    moveFocus(-columns);
+                    break;
+                default:
+                    super.dispatchKeyEvent(event);
+            }
+        }
+        return true;
+    }
+}
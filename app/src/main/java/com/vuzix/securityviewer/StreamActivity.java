@@ -36,9 +36,10 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 import android.content.SharedPreferences;
-import android.net.Uri;
-import android.os.AsyncTask;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.preference.PreferenceManager;
 import android.provider.Settings;
 import android.util.DisplayMetrics;
@@ -55,32 +56,46 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 import android.widget.Toast;
 
+
 import com.vuzix.hud.actionmenu.ActionMenuActivity;
 import com.vuzix.hud.actionmenu.DefaultActionMenuItemView;
+import com.vuzix.securityviewer.model.Camera;
+import com.vuzix.securityviewer.model.PlaybackSample;
+import com.vuzix.securityviewer.model.StartupLatencyBucket;
+import com.vuzix.securityviewer.model.StreamCache;
+import com.vuzix.securityviewer.onvif.StreamEndpointResolver;
+import com.vuzix.securityviewer.utils.AppExecutors;
+import com.vuzix.securityviewer.utils.DecoderPolicy;
+import com.vuzix.securityviewer.utils.LatencyHistogram;
+import com.vuzix.securityviewer.utils.MediaProfileSelector;
+import com.vuzix.securityviewer.utils.NetworkCachingController;
+import com.vuzix.securityviewer.utils.PlaybackStatsRecorder;
+import com.vuzix.securityviewer.utils.ReconnectBackoff;
+import com.vuzix.securityviewer.utils.StartupTrace;
+import com.vuzix.securityviewer.utils.TaskScope;
+import com.vuzix.securityviewer.utils.VLCPlayerPool;
+import com.vuzix.securityviewer.utils.VoiceVocabulary;
+import com.vuzix.securityviewer.utils.WarmStandby;
 import com.vuzix.sdk.speechrecognitionservice.VuzixSpeechClient;
 
 import org.videolan.libvlc.IVLCVout;
-import org.videolan.libvlc.LibVLC;
 import org.videolan.libvlc.Media;
 import org.videolan.libvlc.MediaPlayer;
 
-import java.lang.ref.WeakReference;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
-import be.teletask.onvif.OnvifManager;
-import be.teletask.onvif.listeners.OnvifMediaProfilesListener;
-import be.teletask.onvif.listeners.OnvifMediaStreamURIListener;
-import be.teletask.onvif.listeners.OnvifResponseListener;
-import be.teletask.onvif.models.OnvifDevice;
-import be.teletask.onvif.models.OnvifMediaProfile;
-import be.teletask.onvif.responses.OnvifResponse;
-
 import static android.view.KeyEvent.KEYCODE_DPAD_DOWN;
 import static android.view.KeyEvent.KEYCODE_DPAD_LEFT;
+import static android.view.KeyEvent.KEYCODE_DPAD_RIGHT;
 import static android.view.KeyEvent.KEYCODE_DPAD_UP;
+import static android.view.KeyEvent.KEYCODE_MEDIA_NEXT;
+import static android.view.KeyEvent.KEYCODE_MEDIA_PREVIOUS;
 
-public class StreamActivity extends ActionMenuActivity implements MediaPlayer.EventListener, IVLCVout.Callback {
+public class StreamActivity extends ActionMenuActivity implements MediaPlayer.EventListener, IVLCVout.Callback,
+        NetworkCachingController.NetworkCachingListener {
 
     private static final String TAG = "StreamActivity";
     private String cameraName;
@@ -90,12 +105,15 @@ public class StreamActivity extends ActionMenuActivity implements MediaPlayer.Ev
     private TextView headerPageTitle;
     private View displayShield;
     private ProgressBar pbLoading;
-    private LibVLC mLibVLC;
+    private TextView reconnectText;
+    private TextView statsOverlay;
     private boolean screenOn = true;
+    private boolean videoSuspended = false;
 
     private MenuItem displayBrightnessMenuItem;
     private MenuItem aspectRationMenuItem;
     private MenuItem audioControlOption;
+    private MenuItem statsMenuItem;
 
     private float screenBrightness;
     private boolean screenBrightnessAdjustable = true;
@@ -108,14 +126,52 @@ public class StreamActivity extends ActionMenuActivity implements MediaPlayer.Ev
     private final static int MAX_DISPLAY_BRIGHTNESS = 255;
     private final static int MENU_BRIGHTNESS = 1;
 
+    public final static String EXTRA_UID = "uid";
     public final static String EXTRA_HOSTNAME = "hostname";
     public final static String EXTRA_USERNAME = "username";
     public final static String EXTRA_PASSWORD = "password";
     public final static String EXTRA_CAMERA_NAME = "cameraName";
+    public final static String EXTRA_PROFILE_TOKEN = "profileToken";
+    public final static String EXTRA_OPEN_TIME = "openTime";
+    public final static String EXTRA_CAROUSEL = "carousel";
 
+    private int cameraUID;
     private String hostName;
     private String username;
     private String password;
+    private String profileToken;
+
+    private CamerasDatabase database;
+    private String currentStreamUri;
+    private String freshStreamUri;
+    private boolean playingCachedUri = false;
+    private boolean refreshPending = false;
+    private StartupTrace startupTrace;
+    private boolean warmSwitch = false;
+    private NetworkCachingController cachingController;
+    private final PlaybackStatsRecorder statsRecorder = new PlaybackStatsRecorder();
+
+    private static final long DECODER_CHECK_DELAY = 4000;
+    private static final long DECODER_CONFIRM_DELAY = 1000;
+    private int decoderPath = DecoderPolicy.DECODER_UNKNOWN;
+    private String streamEncoding;
+    private boolean hardwareDecoding = true;
+    private final Runnable decoderCheckRunnable = this::checkHardwareDecoder;
+    private final Runnable decoderConfirmRunnable = this::confirmDecoderPath;
+
+    private static final int HTTP_UNAUTHORIZED = 401;
+    private final ReconnectBackoff reconnectBackoff = new ReconnectBackoff();
+    private final Handler reconnectHandler = new Handler(Looper.getMainLooper());
+    private final Runnable reconnectRunnable = this::reconnect;
+    private String reconnectStreamUri;
+
+    private List<Camera> carousel = new ArrayList<>();
+    private int carouselIndex = -1;
+    private WarmStandby warmStandby;
+    private boolean firstFrameShown = false;
+    private int streamGeneration = 0;
+
+    private final TaskScope tasks = new TaskScope();
 
     /**
      * Called to initially set the views and begin initialize VLC
@@ -150,19 +206,30 @@ public class StreamActivity extends ActionMenuActivity implements MediaPlayer.Ev
         headerPageTitle = findViewById(R.id.header_page_title);
         displayShield = findViewById(R.id.stream_displayshield);
         pbLoading = findViewById(R.id.pb_stream);
+        reconnectText = findViewById(R.id.tv_stream_reconnect);
+        statsOverlay = findViewById(R.id.tv_stream_stats);
 
         mSurfaceView.setKeepScreenOn(true);
+        database = CamerasDatabase.getInstance(this);
+        cameraUID = getIntent().getIntExtra(EXTRA_UID, -1);
         hostName = getIntent().getStringExtra(EXTRA_HOSTNAME);
         username = getIntent().getStringExtra(EXTRA_USERNAME);
         password = getIntent().getStringExtra(EXTRA_PASSWORD);
         cameraName = getIntent().getStringExtra(EXTRA_CAMERA_NAME);
+        profileToken = getIntent().getStringExtra(EXTRA_PROFILE_TOKEN);
         headerPageTitle.setText(cameraName);
+        startupTrace = new StartupTrace(cameraName, getIntent().getLongExtra(EXTRA_OPEN_TIME, 0));
+        cachingController = new NetworkCachingController(this);
+        warmStandby = new WarmStandby(this, database, tasks);
+        statsRecorder.setListener(this::onPlaybackSample);
+        SharedPreferences pref = PreferenceManager.getDefaultSharedPreferences(getContext());
+        statsOverlay.setVisibility(pref.getBoolean("statsOverlay", false) ? View.VISIBLE : View.GONE);
 
         registerReceiver(voiceCmdReceiver, new IntentFilter(VuzixSpeechClient.ACTION_VOICE_COMMAND));
         this.initVoiceVocabulary();
-        LoadStreamURLTask loadStreamURLTask = new LoadStreamURLTask(this);
-        loadStreamURLTask.execute();
+        loadStreamURL();
         initVLC();
+        loadCarousel(getIntent().getIntArrayExtra(EXTRA_CAROUSEL));
     }
 
     /**
@@ -175,11 +242,21 @@ public class StreamActivity extends ActionMenuActivity implements MediaPlayer.Ev
     }
 
     /**
-     * Used to gracefully stop VLC when activity is being destroyed
+     * Used to gracefully stop VLC and hand the player back to the pool when activity is being
+     * destroyed
      */
     @Override
     protected void onDestroy() {
-        mMediaPlayer.stop();
+        tasks.cancel();
+        warmStandby.releaseAll();
+        cachingController.stop();
+        statsRecorder.stop();
+        reconnectHandler.removeCallbacks(reconnectRunnable);
+        reconnectHandler.removeCallbacks(decoderCheckRunnable);
+        reconnectHandler.removeCallbacks(decoderConfirmRunnable);
+        mMediaPlayer.getVLCVout().removeCallback(this);
+        VLCPlayerPool.getInstance(this).release(mMediaPlayer);
+        mMediaPlayer = null;
         unregisterReceiver(voiceCmdReceiver);
         super.onDestroy();
     }
@@ -197,6 +274,8 @@ public class StreamActivity extends ActionMenuActivity implements MediaPlayer.Ev
         audioControlOption = menu.findItem(R.id.menu_item_stream_audio);
         displayBrightnessMenuItem = menu.findItem(R.id.menu_item_stream_brightness);
         aspectRationMenuItem = menu.findItem(R.id.menu_item_stream_aspect);
+        statsMenuItem = menu.findItem(R.id.menu_item_stream_stats);
+        updateStatsMenuItem();
         updateBrightnessMenuItem();
         updateAudioMenuItem(); //called to check global audio setting
         return true;
@@ -226,6 +305,14 @@ public class StreamActivity extends ActionMenuActivity implements MediaPlayer.Ev
         editor.apply();
     }
 
+    /**
+     * Applies the stored listen/mute state to the current player, used after switching cameras
+     */
+    private void applyAudioState() {
+        SharedPreferences pref = PreferenceManager.getDefaultSharedPreferences(getContext());
+        mMediaPlayer.setVolume("1".equals(pref.getString("volState", null)) ? 100 : 0);
+    }
+
     /**
      * Handler for audio control settings
      */
@@ -278,16 +365,73 @@ public class StreamActivity extends ActionMenuActivity implements MediaPlayer.Ev
     }
 
     /**
-     * Called when "Refresh" is pressed, initializes VLC and replays video
+     * Called when "Refresh" is pressed, stops the current stream and replays video
      * @param item Menu item that was pressed
      */
     public void refreshVideoPlayer(MenuItem item){
+        cancelReconnect();
         mMediaPlayer.stop();
-        mSurfaceView.setVisibility(View.GONE);
-        mSurfaceView.setVisibility(View.VISIBLE);
-        initVLC();
-        LoadStreamURLTask loadStreamURLTask = new LoadStreamURLTask(this);
-        loadStreamURLTask.execute();
+        currentStreamUri = null;
+        loadStreamURL();
+    }
+
+    /**
+     * Called when "Show Stats" is pressed, shows or hides the playback statistics overlay and
+     * remembers the choice
+     * @param item Menu item that was pressed
+     */
+    public void toggleStatsOverlay(MenuItem item){
+        boolean visible = statsOverlay.getVisibility() != View.VISIBLE;
+        statsOverlay.setVisibility(visible ? View.VISIBLE : View.GONE);
+        PreferenceManager.getDefaultSharedPreferences(getContext()).edit()
+                .putBoolean("statsOverlay", visible)
+                .apply();
+        updateStatsMenuItem();
+    }
+
+    /**
+     * Updates the statistics menu item to match the overlay
+     */
+    private void updateStatsMenuItem(){
+        statsMenuItem.setTitle(statsOverlay.getVisibility() == View.VISIBLE
+                ? R.string.menu_item_stream_stats_hide : R.string.menu_item_stream_stats_show);
+    }
+
+    /**
+     * Called when "Export Stats" is pressed, writes the samples of this session as CSV to the app's
+     * external files directory on the IO lane
+     * @param item Menu item that was pressed
+     */
+    public void exportPlaybackStats(MenuItem item){
+        List<PlaybackSample> samples = statsRecorder.getSamples();
+        if (samples.isEmpty()) {
+            Toast.makeText(this, R.string.toast_stream_stats_empty, Toast.LENGTH_SHORT).show();
+            return;
+        }
+        File directory = getExternalFilesDir(null);
+        tasks.run(AppExecutors.Lane.IO, () -> {
+            try {
+                File file = PlaybackStatsRecorder.exportCsv(samples, directory);
+                tasks.postToMain(() -> Toast.makeText(this, getString(R.string.toast_stream_stats_exported,
+                        file.getAbsolutePath()), Toast.LENGTH_LONG).show());
+            } catch (IOException e) {
+                Log.e(TAG, "Could not export statistics: " + e.getMessage());
+                tasks.postToMain(() -> Toast.makeText(this, R.string.toast_stream_stats_export_failed,
+                        Toast.LENGTH_SHORT).show());
+            }
+        });
+    }
+
+    /**
+     * Called with every playback statistics sample, updates the overlay if it is shown
+     * @param sample Sample of the interval that just ended
+     */
+    private void onPlaybackSample(PlaybackSample sample){
+        if (statsOverlay.getVisibility() == View.VISIBLE) {
+            statsOverlay.setText(getString(R.string.tv_stream_stats, sample.getInputBitrate(),
+                    sample.getDemuxBitrate(), sample.getDecodedVideo(), sample.getDisplayedPictures(),
+                    sample.getLostPictures(), sample.getDemuxCorrupted(), sample.getDemuxDiscontinuities()));
+        }
     }
 
     /**
@@ -362,26 +506,23 @@ public class StreamActivity extends ActionMenuActivity implements MediaPlayer.Ev
     }
 
     /**
-     * Called to initialize the VLC display with pre-set settings
+     * Called to initialize the VLC display with pre-set settings using the shared LibVLC instance
+     * and a pooled player
      */
     private void initVLC() {
-        ArrayList<String> options = new ArrayList<>();
-        options.add("-vvv"); // Used to enable verbose logging for VLC
-
-        // authentication for locked cameras
-        if(username != null && password != null){
-            options.add("--rtsp-user=" + username);
-            options.add("--rtsp-pwd=" + password);
-        }
-
-        mLibVLC = new LibVLC(getApplicationContext(), options);
-        mMediaPlayer = new MediaPlayer(mLibVLC);
+        mMediaPlayer = VLCPlayerPool.getInstance(this).acquire();
         mMediaPlayer.setEventListener(this);
+        adjustAspectRatio();
+        attachSurface();
+    }
 
+    /**
+     * Attaches the surface view to the current player, sized to the display
+     */
+    private void attachSurface() {
         final IVLCVout vlcVout = mMediaPlayer.getVLCVout();
         DisplayMetrics displayMetrics = new DisplayMetrics();
         getWindowManager().getDefaultDisplay().getMetrics(displayMetrics);
-        adjustAspectRatio();
 
         ViewGroup.LayoutParams videoParams = mSurfaceView.getLayoutParams();
         videoParams.width = displayMetrics.widthPixels;
@@ -393,6 +534,241 @@ public class StreamActivity extends ActionMenuActivity implements MediaPlayer.Ev
         vlcVout.attachViews();
     }
 
+    /**
+     * Detaches the surface view from the current player, the player keeps running without output
+     */
+    private void detachSurface() {
+        final IVLCVout vlcVout = mMediaPlayer.getVLCVout();
+        vlcVout.removeCallback(this);
+        vlcVout.detachViews();
+    }
+
+    /**
+     * Called with the stream URI stored from a previous open, starts playback right away while
+     * LoadStreamURLTask verifies the URI with the camera in the background
+     * @param path Cached stream URL to play
+     */
+    private void onCachedStreamURILoaded(String path) {
+        if (currentStreamUri == null) {
+            Log.d(TAG, "Playing cached stream URI");
+            playingCachedUri = true;
+            play(path);
+            setPbLoading(false);
+        }
+    }
+
+    /**
+     * Called on the UI thread when the camera returned its current stream URI. Stores it for the
+     * next open and only restarts playback if it differs from what is already playing
+     * @param path Stream URL returned by the camera
+     * @param encoding Video encoding of the selected profile, null if unknown
+     */
+    private void onStreamURIResolved(String path, String encoding) {
+        refreshPending = false;
+        if (encoding != null && !encoding.equals(streamEncoding)) {
+            // Same as the stream cache, a decoder path learned for another encoding no longer applies
+            streamEncoding = encoding;
+            decoderPath = DecoderPolicy.DECODER_UNKNOWN;
+        }
+        freshStreamUri = path;
+        if (!path.equals(currentStreamUri)) {
+            playingCachedUri = false;
+            play(path);
+        }
+        setPbLoading(false);
+    }
+
+    /**
+     * Called on the UI thread when the camera could not be asked for its stream URI. Playback from
+     * a cached URI is left running, rejected credentials tell the user access was denied and an
+     * unreachable camera is retried
+     * @param errorCode ONVIF error code, -1 for network errors otherwise the HTTP status
+     */
+    private void onStreamURIFailed(int errorCode) {
+        refreshPending = false;
+        if (currentStreamUri != null) {
+            Log.d(TAG, "Stream URI refresh failed, continuing with cached URI");
+        } else if (errorCode == HTTP_UNAUTHORIZED) {
+            showUnauthorizedToast();
+        } else {
+            scheduleReconnect(null);
+        }
+    }
+
+    /**
+     * Schedules the next reconnect attempt after the backoff delay and shows its progress. The
+     * surface stays attached to the player the whole time so playback resumes in place
+     * @param failedStreamUri Stream URI that just stopped playing, null to keep the previous one
+     */
+    private void scheduleReconnect(String failedStreamUri) {
+        if (failedStreamUri != null) {
+            reconnectStreamUri = failedStreamUri;
+        }
+        reconnectHandler.removeCallbacks(reconnectRunnable);
+        long delay = reconnectBackoff.nextDelay();
+        Log.d(TAG, "Reconnect attempt " + reconnectBackoff.getAttempt() + " in " + delay + "ms");
+        reconnectText.setText(getString(R.string.tv_stream_reconnecting, reconnectBackoff.getAttempt(), delay / 1000f));
+        reconnectText.setVisibility(View.VISIBLE);
+        reconnectHandler.postDelayed(reconnectRunnable, delay);
+    }
+
+    /**
+     * Reconnect attempt. A dropped stream usually comes back on the same URI so the first attempt
+     * replays it, once that fails the URI is dropped from the cache and the camera asked again
+     */
+    private void reconnect() {
+        if (reconnectBackoff.getAttempt() == 1 && reconnectStreamUri != null) {
+            play(reconnectStreamUri);
+        } else {
+            invalidateCachedStreamURI();
+            resolveStreamURL();
+        }
+    }
+
+    /**
+     * Stops a reconnect in progress and hides its indicator
+     */
+    private void cancelReconnect() {
+        reconnectHandler.removeCallbacks(reconnectRunnable);
+        reconnectBackoff.reset();
+        reconnectStreamUri = null;
+        reconnectText.setVisibility(View.GONE);
+    }
+
+    /**
+     * Called a while after a hardware decoded stream started playing without showing a frame,
+     * switches to software decoding if the stream is arriving but nothing gets decoded
+     */
+    private void checkHardwareDecoder() {
+        if (currentStreamUri != null && hardwareDecoding && !firstFrameShown && !videoSuspended
+                && hardwareDecoderFailed()) {
+            fallBackToSoftwareDecoder();
+        }
+    }
+
+    /**
+     * Checks the media stats for a stream that arrives but is not decoded, which tells a rejected
+     * hardware decoder apart from a camera that is not sending anything
+     * @return True if bytes were read but no picture was displayed
+     */
+    private boolean hardwareDecoderFailed() {
+        Media.Stats stats = getMediaStats();
+        return stats != null && stats.readBytes > 0 && stats.displayedPictures == 0;
+    }
+
+    /**
+     * Called a while after the video output appeared, stores the decoder path once the stream has
+     * actually displayed pictures with it. Hardware decoding is forced, so a MediaCodec rejection
+     * leaves the picture count at zero instead of silently decoding in software
+     */
+    private void confirmDecoderPath() {
+        if (currentStreamUri == null || videoSuspended) {
+            return;
+        }
+        Media.Stats stats = getMediaStats();
+        if (stats == null) {
+            return;
+        }
+        if (stats.displayedPictures > 0) {
+            rememberDecoderPath(hardwareDecoding ? DecoderPolicy.DECODER_HARDWARE : DecoderPolicy.DECODER_SOFTWARE);
+        } else if (hardwareDecoding && stats.readBytes > 0) {
+            fallBackToSoftwareDecoder();
+        } else {
+            reconnectHandler.postDelayed(decoderConfirmRunnable, DECODER_CONFIRM_DELAY);
+        }
+    }
+
+    /**
+     * Reads the statistics of the media that is currently playing
+     * @return Media stats, null if no media is set
+     */
+    private Media.Stats getMediaStats() {
+        Media media = mMediaPlayer.getMedia();
+        if (media == null) {
+            return null;
+        }
+        Media.Stats stats = media.getStats();
+        media.release();
+        return stats;
+    }
+
+    /**
+     * Remembers that the hardware decoder does not work for this camera and replays the stream
+     * decoded in software
+     */
+    private void fallBackToSoftwareDecoder() {
+        Log.d(TAG, "Hardware decoder produced no frames, falling back to software");
+        String streamUri = currentStreamUri;
+        rememberDecoderPath(DecoderPolicy.DECODER_SOFTWARE);
+        play(streamUri);
+    }
+
+    /**
+     * Stores the decoder path that works for this camera so the next open starts with it
+     * @param path One of the DecoderPolicy.DECODER_ constants
+     */
+    private void rememberDecoderPath(int path) {
+        if (path == decoderPath || cameraUID == -1) {
+            return;
+        }
+        decoderPath = path;
+        int uid = cameraUID;
+        AppExecutors.getInstance().submit(AppExecutors.Lane.IO, () -> {
+            StreamCache streamCache = new StreamCache();
+            streamCache.setCameraUID(uid);
+            database.getStreamCacheDAO().add(streamCache);
+            database.getStreamCacheDAO().updateDecoderPath(uid, path);
+        });
+    }
+
+    /**
+     * Adds the time to first frame of this open to the camera's latency histogram
+     * @param timeToFirstFrame Time to first frame in milliseconds, negative if already recorded
+     */
+    private void recordStartupLatency(long timeToFirstFrame) {
+        if (cameraUID == -1 || timeToFirstFrame < 0) {
+            return;
+        }
+        int uid = cameraUID;
+        int bucket = LatencyHistogram.bucketFor(timeToFirstFrame);
+        AppExecutors.getInstance().submit(AppExecutors.Lane.IO, () -> {
+            StartupLatencyBucket latencyBucket = new StartupLatencyBucket();
+            latencyBucket.setCameraUID(uid);
+            latencyBucket.setBucket(bucket);
+            database.getStartupLatencyDAO().add(latencyBucket);
+            database.getStartupLatencyDAO().increment(uid, bucket);
+        });
+    }
+
+    /**
+     * Caching controller callback, remembers the caching for the next time this camera is opened
+     * @param networkCaching New caching in milliseconds
+     */
+    @Override
+    public void onNetworkCachingChanged(int networkCaching) {
+        if (cameraUID == -1) {
+            return;
+        }
+        int uid = cameraUID;
+        AppExecutors.getInstance().submit(AppExecutors.Lane.IO, () -> {
+            StreamCache streamCache = new StreamCache();
+            streamCache.setCameraUID(uid);
+            database.getStreamCacheDAO().add(streamCache);
+            database.getStreamCacheDAO().updateNetworkCaching(uid, networkCaching);
+        });
+    }
+
+    /**
+     * Removes the cached stream URI for this camera so the next open asks the camera again
+     */
+    private void invalidateCachedStreamURI() {
+        if (cameraUID == -1) {
+            return;
+        }
+        int uid = cameraUID;
+        AppExecutors.getInstance().submit(AppExecutors.Lane.IO, () -> database.getStreamCacheDAO().invalidateStreamUri(uid));
+    }
+
     /**
      * Method for telling VLC to start playing a specific stream
      * @param path Stream URL to play
@@ -400,15 +776,17 @@ public class StreamActivity extends ActionMenuActivity implements MediaPlayer.Ev
     private void play(String path) {
         if (!path.isEmpty()) {
             Log.d(TAG, "Playing URL");
+            startupTrace.mark(StartupTrace.Stage.PLAY);
+            warmSwitch = false;
+            currentStreamUri = path;
             try {
-                Media media = new Media(mLibVLC, Uri.parse(path));
-                media.setHWDecoderEnabled(true, false);
-                media.addOption(":file-caching=2000");
-                media.addOption(":network-caching=2000");
-                media.addOption(":clock-jitter=0");
-                media.addOption(":clock-synchro=0");
-
+                int networkCaching = cachingController.getNetworkCaching();
+                hardwareDecoding = DecoderPolicy.getInstance().useHardware(decoderPath, streamEncoding);
+                Log.d(TAG, "Network caching " + networkCaching + "ms, hardware decoding " + hardwareDecoding);
+                Media media = VLCPlayerPool.getInstance(this).createMedia(path, networkCaching, username,
+                        password, hardwareDecoding, true);
                 mMediaPlayer.setMedia(media);
+                media.release();
                 mMediaPlayer.play();
             } catch (Exception e) {
                 Log.e("Media Player", e.getMessage());
@@ -421,24 +799,11 @@ public class StreamActivity extends ActionMenuActivity implements MediaPlayer.Ev
     }
 
     /**
-     * Initializes the SpeechRecognizer, removes all phrases and adds back the wake/sleep phrases
-     * add the listen/mute speech commands
+     * Makes sure the listen/mute and camera switching speech commands are in the shared
+     * vocabulary, usually a no-op since the vocabulary already holds them
      */
     private void initVoiceVocabulary() {
-        try {
-            VuzixSpeechClient vuzixSpeechClient = new VuzixSpeechClient(this);
-            vuzixSpeechClient.deletePhrase("*");
-            vuzixSpeechClient.insertWakeWordPhrase("hello vuzix");    // Add "hello vuzix" wake-up phrase for consistency
-            vuzixSpeechClient.insertWakeWordPhrase("hey blade");      // Add application specific wake-up phrase
-
-            vuzixSpeechClient.insertVoiceOffPhrase("voice off");      // Add-back the default phrase for consistency
-            vuzixSpeechClient.insertVoiceOffPhrase("privacy please"); // Add application specific stop listening phrase
-            vuzixSpeechClient.insertPhrase("listen in");
-            vuzixSpeechClient.insertPhrase("mute camera");
-            Log.d("StreamActivity", vuzixSpeechClient.dump());
-        } catch (Exception e) {
-            Log.e("StreamActivity", e.getMessage());
-        }
+        VoiceVocabulary.getInstance(this).syncCommandPhrases();
     }
 
     private BroadcastReceiver voiceCmdReceiver = new BroadcastReceiver() {
@@ -450,10 +815,14 @@ public class StreamActivity extends ActionMenuActivity implements MediaPlayer.Ev
                 String phrase = intent.getStringExtra(VuzixSpeechClient.PHRASE_STRING_EXTRA);
                 System.out.println(phrase);
                 if (phrase != null) {
-                    if (phrase.equals("listen in")) {
+                    if (phrase.equals(VoiceVocabulary.PHRASE_LISTEN_IN)) {
                         unmuteAudioPlayer(editor, audioControlOption);
-                    } else if (phrase.equals("mute camera")) {
+                    } else if (phrase.equals(VoiceVocabulary.PHRASE_MUTE_CAMERA)) {
                         muteAudioPlayer(editor, audioControlOption);
+                    } else if (phrase.equals(VoiceVocabulary.PHRASE_NEXT_CAMERA)) {
+                        switchCamera(1);
+                    } else if (phrase.equals(VoiceVocabulary.PHRASE_PREVIOUS_CAMERA)) {
+                        switchCamera(-1);
                     }
                 }
             }
@@ -461,16 +830,67 @@ public class StreamActivity extends ActionMenuActivity implements MediaPlayer.Ev
     };
 
     /**
-     * VLC event listener called when an event happens, used to display loading and error messages
+     * VLC event listener called when an event happens, used to display loading messages, trace the
+     * time to the first frame and reconnect when the stream drops
      * @param event VLC event that has occurred
      */
     @Override
     public void onEvent(MediaPlayer.Event event) {
         if(event.type == MediaPlayer.Event.Opening){
-            Toast.makeText(this, getString(R.string.toast_opening), Toast.LENGTH_SHORT).show();
-        }else if(event.type == MediaPlayer.Event.EncounteredError){
-            Toast.makeText(this, getString(R.string.toast_error), Toast.LENGTH_LONG).show();
-            finish();
+            startupTrace.mark(StartupTrace.Stage.VLC_OPENING);
+            if(!reconnectBackoff.isReconnecting()){
+                Toast.makeText(this, getString(R.string.toast_opening), Toast.LENGTH_SHORT).show();
+            }
+        }else if(event.type == MediaPlayer.Event.Playing){
+            startupTrace.mark(StartupTrace.Stage.VLC_PLAYING);
+            if(videoSuspended){
+                // Opened behind the shield, e.g. while reconnecting
+                mMediaPlayer.setVideoTrackEnabled(false);
+            }
+            cachingController.start(mMediaPlayer);
+            statsRecorder.start(mMediaPlayer, cameraName);
+            cancelReconnect();
+            if(hardwareDecoding && decoderPath != DecoderPolicy.DECODER_HARDWARE && !videoSuspended){
+                reconnectHandler.removeCallbacks(decoderCheckRunnable);
+                reconnectHandler.postDelayed(decoderCheckRunnable, DECODER_CHECK_DELAY);
+            }
+        }else if(event.type == MediaPlayer.Event.Buffering){
+            cachingController.onBuffering(event.getBuffering());
+        }else if(event.type == MediaPlayer.Event.Vout && event.getVoutCount() > 0){
+            long timeToFirstFrame = startupTrace.finish();
+            if(!warmSwitch){
+                // A standby stream is already decoding, its first frame says nothing about opening one
+                recordStartupLatency(timeToFirstFrame);
+            }
+            reconnectHandler.removeCallbacks(decoderCheckRunnable);
+            reconnectHandler.removeCallbacks(decoderConfirmRunnable);
+            reconnectHandler.postDelayed(decoderConfirmRunnable, DECODER_CONFIRM_DELAY);
+            firstFrameShown = true;
+            prepareNeighbours();
+        }else if(event.type == MediaPlayer.Event.EncounteredError || event.type == MediaPlayer.Event.EndReached){
+            cachingController.stop();
+            statsRecorder.stop();
+            reconnectHandler.removeCallbacks(decoderCheckRunnable);
+            reconnectHandler.removeCallbacks(decoderConfirmRunnable);
+            String failedStreamUri = currentStreamUri;
+            if(failedStreamUri != null && hardwareDecoding && !firstFrameShown && hardwareDecoderFailed()){
+                fallBackToSoftwareDecoder();
+                return;
+            }
+            currentStreamUri = null;
+            if(playingCachedUri){
+                // The cached URI may simply be stale, fall back to the one the camera reports
+                playingCachedUri = false;
+                invalidateCachedStreamURI();
+                if(refreshPending){
+                    setPbLoading(true);
+                    return;
+                }else if(freshStreamUri != null && !freshStreamUri.equals(failedStreamUri)){
+                    play(freshStreamUri);
+                    return;
+                }
+            }
+            scheduleReconnect(failedStreamUri);
         }
     }
 
@@ -494,7 +914,8 @@ public class StreamActivity extends ActionMenuActivity implements MediaPlayer.Ev
 
     /**
      * Used to toggle the visibility of a "shield" view to mock display being turned off, surface
-     * view that displays the video cannot be made invisible as VLC breaks when it is abandoned
+     * view that displays the video cannot be made invisible as VLC breaks when it is abandoned.
+     * Video decoding is suspended while the shield is up
      * @param showDisplay Toggle for showing/hiding the display
      */
     private void toggleDisplay(boolean showDisplay) {
@@ -507,7 +928,22 @@ public class StreamActivity extends ActionMenuActivity implements MediaPlayer.Ev
             mSurfaceView.setKeepScreenOn(false);
             screenOn = false;
         }
+        setVideoSuspended(!showDisplay);
+    }
 
+    /**
+     * Stops or restarts decoding video behind the shield. The video track is disabled so nothing is
+     * decoded or rendered while the RTSP session and audio keep running, enabling it again only has
+     * to wait for the next key frame
+     * @param suspended True to stop decoding video
+     */
+    private void setVideoSuspended(boolean suspended) {
+        if (suspended == videoSuspended || mMediaPlayer == null) {
+            return;
+        }
+        Log.d(TAG, suspended ? "Suspending video decoding" : "Resuming video decoding");
+        videoSuspended = suspended;
+        mMediaPlayer.setVideoTrackEnabled(!suspended);
     }
 
     /**
@@ -530,8 +966,8 @@ public class StreamActivity extends ActionMenuActivity implements MediaPlayer.Ev
     }
 
     /**
-     * Method to capture which key was pressed on the track-pad, used for display brightness and
-     * video visibility toggle
+     * Method to capture which key was pressed on the track-pad, used for display brightness, video
+     * visibility toggle and switching to the neighbouring cameras
      * @param keyCode Key code of the event
      * @param event Event registered with track-pad
      * @return Super.onKeyDown to handle default key presses
@@ -544,6 +980,21 @@ public class StreamActivity extends ActionMenuActivity implements MediaPlayer.Ev
                     toggleDisplay(false);
                 }
                 break;
+            case KEYCODE_DPAD_RIGHT:
+                if(screenOn){
+                    // Same direction as the carousel on the home screen
+                    switchCamera(-1);
+                }else{
+                    // Only wake a shielded display, don't change what it shows
+                    toggleDisplay(true);
+                }
+                break;
+            case KEYCODE_MEDIA_NEXT:
+                switchCamera(1);
+                break;
+            case KEYCODE_MEDIA_PREVIOUS:
+                switchCamera(-1);
+                break;
             case KEYCODE_DPAD_UP:
                 if(screenBrightnessAdjustable){
                     maxDisplayBrightness(true);
@@ -576,105 +1027,228 @@ public class StreamActivity extends ActionMenuActivity implements MediaPlayer.Ev
         });
     }
 
-    private static class LoadStreamURLTask extends AsyncTask<Void, Void, Void> implements OnvifMediaProfilesListener, OnvifMediaStreamURIListener, OnvifResponseListener {
+    /**
+     * Used to fetch the Stream URL and tell the user work is being done. The cached stream URL is
+     * played first while the camera is asked for its current one on the interactive lane
+     */
+    private void loadStreamURL() {
+        Log.d(TAG, "Starting fetch stream process");
+        refreshPending = true;
+        setPbLoading(true);
+        startupTrace.mark(StartupTrace.Stage.RESOLVE_STARTED);
+
+        int generation = streamGeneration;
+        int uid = cameraUID;
+        StreamEndpointResolver resolver = createStreamEndpointResolver();
+        tasks.run(AppExecutors.Lane.INTERACTIVE, () -> {
+            // Queries the decoders on first use, keep that off the main thread
+            DecoderPolicy.getInstance();
+            if (uid != -1) {
+                StreamCache streamCache = database.getStreamCacheDAO().getStreamCache(uid);
+                if (streamCache != null) {
+                    tasks.postToMain(() -> {
+                        if (generation != streamGeneration) {
+                            return;
+                        }
+                        cachingController.setNetworkCaching(streamCache.getNetworkCaching());
+                        decoderPath = streamCache.getDecoderPath();
+                        streamEncoding = streamCache.getEncoding();
+                        if (streamCache.getStreamUri() != null) {
+                            onCachedStreamURILoaded(streamCache.getStreamUri());
+                        }
+                    });
+                }
+            }
+            requestStreamURL(resolver, generation);
+        });
+    }
 
-        private static final String TAG = "StreamActivity";
+    /**
+     * Used to ask the camera for its current stream URL without going through the cache, used
+     * while reconnecting once the known URL stopped working
+     */
+    private void resolveStreamURL() {
+        Log.d(TAG, "Resolving stream URL again");
+        refreshPending = true;
+        int generation = streamGeneration;
+        StreamEndpointResolver resolver = createStreamEndpointResolver();
+        tasks.run(AppExecutors.Lane.INTERACTIVE, () -> requestStreamURL(resolver, generation));
+    }
 
-        private WeakReference<StreamActivity> streamReference;
-        private OnvifManager onvifManager;
+    /**
+     * Creates the resolver for the camera on screen, the profile that best fits the display is
+     * picked
+     * @return Resolver for the current camera
+     */
+    private StreamEndpointResolver createStreamEndpointResolver() {
+        DisplayMetrics displayMetrics = getResources().getDisplayMetrics();
+        MediaProfileSelector profileSelector = new MediaProfileSelector(displayMetrics.widthPixels, displayMetrics.heightPixels);
+        StreamEndpointResolver resolver = new StreamEndpointResolver(database, cameraUID, hostName,
+                username, password, profileToken, profileSelector);
+        resolver.setStartupTrace(startupTrace);
+        return resolver;
+    }
 
-        /**
-         * Constructor for LoadStreamURLTask, creates a weak reference to StreamActivity
-         * @param context StreamActivity context
-         */
-        LoadStreamURLTask(StreamActivity context){
-            streamReference = new WeakReference<>(context);
-            onvifManager = new OnvifManager();
-            onvifManager.setOnvifResponseListener(this);
-        }
+    /**
+     * Asks the camera for its stream URL, the result is posted back to the main thread and dropped
+     * if another camera was switched to in the meantime
+     * @param resolver Resolver for the camera
+     * @param generation Stream generation the request belongs to
+     */
+    private void requestStreamURL(StreamEndpointResolver resolver, int generation) {
+        resolver.resolve(new StreamEndpointResolver.StreamEndpointListener() {
+            @Override
+            public void onStreamEndpointResolved(String streamUri) {
+                tasks.postToMain(() -> {
+                    if (generation == streamGeneration) {
+                        onStreamURIResolved(streamUri, resolver.getEncoding());
+                    }
+                });
+            }
 
-        /**
-         * Used to fetch the Stream URL and tell the user work is being done
-         */
-        @Override
-        protected void onPreExecute() {
-            Log.d(TAG, "Starting fetch stream process");
-            StreamActivity streamActivity = streamReference.get();
-            if (streamActivity != null && !streamActivity.isFinishing()) {
-                streamActivity.setPbLoading(true);
+            @Override
+            public void onStreamEndpointFailed(int errorCode) {
+                tasks.postToMain(() -> {
+                    if (generation == streamGeneration) {
+                        onStreamURIFailed(errorCode);
+                    }
+                });
             }
-        }
+        });
+    }
 
-        /**
-         * Used to get the media profiles and stream URL.
-         * @param voids Not used, null
-         * @return Null
-         */
-        @Override
-        protected Void doInBackground(Void... voids) {
-            Log.d(TAG, "Requesting media profiles");
-            StreamActivity streamActivity = streamReference.get();
-            if (streamActivity != null && !streamActivity.isFinishing()) {
-                OnvifDevice onvifDevice = new OnvifDevice(streamActivity.hostName,
-                        streamActivity.username,
-                        streamActivity.password);
-                onvifManager.getMediaProfiles(onvifDevice, this);
+    /**
+     * Loads the cameras of the home screen carousel so the stream can switch between them
+     * @param carouselUIDs Camera UIDs in carousel order, null if opened on its own
+     */
+    private void loadCarousel(int[] carouselUIDs) {
+        if (carouselUIDs == null || carouselUIDs.length < 2) {
+            return;
+        }
+        tasks.run(AppExecutors.Lane.IO, () -> {
+            List<Camera> cameras = new ArrayList<>();
+            for (int uid : carouselUIDs) {
+                Camera camera = CameraRepository.getInstance(this).getCamera(uid);
+                if (camera != null) {
+                    cameras.add(camera);
+                }
             }
+            tasks.postToMain(() -> onCarouselLoaded(cameras));
+        });
+    }
 
-            return null;
+    /**
+     * Called on the UI thread with the carousel cameras, finds the one on screen and connects its
+     * neighbours once it shows its first frame
+     * @param cameras Carousel cameras in order
+     */
+    private void onCarouselLoaded(List<Camera> cameras) {
+        carousel = cameras;
+        carouselIndex = -1;
+        for (int i = 0; i < cameras.size(); i++) {
+            if (cameras.get(i).getUID() == cameraUID) {
+                carouselIndex = i;
+            }
         }
+        prepareNeighbours();
+    }
 
-        /**
-         * ONVIF listener method called when media profiles are received
-         * @param onvifDevice OnvifDevice relating to the media profiles
-         * @param list List of OnvifMediaProfile objects
-         */
-        @Override
-        public void onMediaProfilesReceived(OnvifDevice onvifDevice, List<OnvifMediaProfile> list) {
-            Log.d(TAG, "Media profiles received");
-            onvifManager.getMediaStreamURI(onvifDevice, list.get(0), this);
+    /**
+     * Puts the cameras before and after the one on screen on standby. Waits for the first frame so
+     * the standby streams never compete with the stream being opened
+     */
+    private void prepareNeighbours() {
+        if (!firstFrameShown || carouselIndex == -1 || carousel.size() < 2) {
+            return;
         }
+        List<Camera> neighbours = new ArrayList<>();
+        neighbours.add(carousel.get((carouselIndex + 1) % carousel.size()));
+        Camera previous = carousel.get((carouselIndex - 1 + carousel.size()) % carousel.size());
+        if (!neighbours.contains(previous)) {
+            neighbours.add(previous);
+        }
+        warmStandby.prepare(neighbours);
+    }
 
-        /**
-         * ONVIF listener method called when stream URI is received
-         * @param onvifDevice OnvifDevice related to the stream URI
-         * @param onvifMediaProfile OnvifMediaProfile related to the OnvifDevice
-         * @param uriPath URI path for the OnvifDevice
-         */
-        @Override
-        public void onMediaStreamURIReceived(OnvifDevice onvifDevice, OnvifMediaProfile onvifMediaProfile, String uriPath) {
-            Log.d(TAG, "Media stream URI received");
-            StreamActivity streamActivity = streamReference.get();
-            if (streamActivity != null && !streamActivity.isFinishing()) {
-                streamActivity.play(uriPath);
-                streamActivity.setPbLoading(false);
-            }
+    /**
+     * Switches to a neighbouring camera in the carousel. A camera on standby is moved onto the
+     * surface and the one that was on screen takes its place on standby, any other camera is opened
+     * on the current player
+     * @param step 1 for the next camera, -1 for the previous one
+     */
+    private void switchCamera(int step) {
+        if (carouselIndex == -1 || carousel.size() < 2) {
+            return;
+        }
+        Camera previousCamera = carousel.get(carouselIndex);
+        String previousStreamUri = currentStreamUri;
+        int previousNetworkCaching = cachingController.getNetworkCaching();
+        boolean previousHardwareDecoding = hardwareDecoding;
+        carouselIndex = (carouselIndex + step + carousel.size()) % carousel.size();
+        Camera camera = carousel.get(carouselIndex);
+        Log.d(TAG, "Switching to " + camera.getPresentableName());
+
+        streamGeneration++;
+        cancelReconnect();
+        cachingController.stop();
+        statsRecorder.stop();
+        reconnectHandler.removeCallbacks(decoderCheckRunnable);
+        reconnectHandler.removeCallbacks(decoderConfirmRunnable);
+        setPbLoading(false);
+
+        cameraUID = camera.getUID();
+        hostName = camera.getHostName();
+        username = camera.getUsername();
+        password = camera.getPassword();
+        cameraName = camera.getPresentableName();
+        profileToken = camera.getStreamProfileToken();
+        headerPageTitle.setText(cameraName);
+        startupTrace = new StartupTrace(cameraName, SystemClock.elapsedRealtime());
+        warmSwitch = false;
+        firstFrameShown = false;
+        currentStreamUri = null;
+        freshStreamUri = null;
+        playingCachedUri = false;
+        refreshPending = false;
+        decoderPath = DecoderPolicy.DECODER_UNKNOWN;
+        streamEncoding = null;
+
+        WarmStandby.StandbyStream standbyStream = warmStandby.take(cameraUID);
+        if (standbyStream == null) {
+            mMediaPlayer.stop();
+            cachingController.setNetworkCaching(NetworkCachingController.DEFAULT_CACHING);
+            loadStreamURL();
+            return;
         }
 
-        /**
-         * ONVIF listener method trigger on response received, not used
-         * @param onvifDevice OnvifDevice related to the response
-         * @param onvifResponse OnvifResponse object containing response data
-         */
-        @Override
-        public void onResponse(OnvifDevice onvifDevice, OnvifResponse onvifResponse) {
-            // Not used
+        warmSwitch = true;
+        MediaPlayer previousPlayer = mMediaPlayer;
+        detachSurface();
+        mMediaPlayer = standbyStream.getMediaPlayer();
+        mMediaPlayer.setEventListener(this);
+        attachSurface();
+        mMediaPlayer.setVideoTrackEnabled(!videoSuspended);
+        adjustAspectRatio();
+        applyAudioState();
+        if (previousStreamUri != null) {
+            warmStandby.adopt(previousCamera, previousPlayer, previousStreamUri, previousNetworkCaching,
+                    previousHardwareDecoding);
+        } else {
+            VLCPlayerPool.getInstance(this).release(previousPlayer);
         }
 
-        /**
-         * ONVIF listener method triggered when error received, used to detect authentication issues
-         * @param onvifDevice OnvifDevice related to the error
-         * @param errorCode Error code
-         * @param errorMessage Error message relating to the error code
-         */
-        @Override
-        public void onError(OnvifDevice onvifDevice, int errorCode, String errorMessage) {
-            StreamActivity streamActivity = streamReference.get();
-            if (streamActivity != null && !streamActivity.isFinishing()) {
-                if(onvifDevice.getHostName().equals(streamActivity.hostName)){
-                    streamActivity.showUnauthorizedToast();
-                }
-            }
+        startupTrace.mark(StartupTrace.Stage.PLAY);
+        cachingController.setNetworkCaching(standbyStream.getNetworkCaching());
+        cachingController.start(mMediaPlayer);
+        statsRecorder.start(mMediaPlayer, cameraName);
+        currentStreamUri = standbyStream.getStreamUri();
+        playingCachedUri = standbyStream.isCached();
+        hardwareDecoding = standbyStream.isHardwareDecoding();
+        decoderPath = standbyStream.getDecoderPath();
+        streamEncoding = standbyStream.getEncoding();
+        if (playingCachedUri) {
+            // Verify the cached URI with the camera like a regular open does
+            resolveStreamURL();
         }
     }
-}
\ No newline at end of file
+}
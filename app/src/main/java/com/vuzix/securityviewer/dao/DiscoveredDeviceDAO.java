@@ -0,0 +1,76 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.vuzix.securityviewer.model.DiscoveredDevice;
+
+import java.util.List;
+
+@Dao
+public interface DiscoveredDeviceDAO {
+
+    /**
+     * Add or replace operation for the database
+     * @param device Discovered device to store
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void put(DiscoveredDevice device);
+
+    /**
+     * Method to get the devices discovered on a network
+     * @param ssid SSID of the network
+     * @return List of devices discovered on the network
+     */
+    @Query("SELECT * FROM discovered_devices WHERE ssid = :ssid ORDER BY hostName")
+    List<DiscoveredDevice> getDevices(String ssid);
+
+    /**
+     * Method to remove a device from the cache, e.g. once it was subscribed to
+     * @param ssid SSID of the network
+     * @param hostName Host name of the device
+     */
+    @Query("DELETE FROM discovered_devices WHERE ssid = :ssid AND hostName = :hostName")
+    void delete(String ssid, String hostName);
+
+    /**
+     * Method to expire the devices of a network that did not answer the last refresh
+     * @param ssid SSID of the network
+     * @param seenSince Start of the refresh, devices seen before are removed
+     */
+    @Query("DELETE FROM discovered_devices WHERE ssid = :ssid AND lastSeen < :seenSince")
+    void deleteUnseen(String ssid, long seenSince);
+}
@@ -0,0 +1,67 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.vuzix.securityviewer.model.StartupLatencyBucket;
+
+import java.util.List;
+
+@Dao
+public interface StartupLatencyDAO {
+
+    /**
+     * Add operation for the database, ignored if the bucket already exists
+     * @param bucket Bucket to add to the database
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void add(StartupLatencyBucket bucket);
+
+    /**
+     * Method to count one more stream open in a bucket
+     * @param cameraUID UID of the camera that was opened
+     * @param bucket Index of the bucket the startup time fell into
+     */
+    @Query("UPDATE startup_latency SET count = count + 1 WHERE cameraUID = :cameraUID AND bucket = :bucket")
+    void increment(int cameraUID, int bucket);
+
+    /**
+     * Method to get the histograms of every camera
+     * @return List of buckets ordered by camera and bucket
+     */
+    @Query("SELECT * FROM startup_latency ORDER BY cameraUID, bucket")
+    List<StartupLatencyBucket> getBuckets();
+}
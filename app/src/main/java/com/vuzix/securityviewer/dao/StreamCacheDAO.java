@@ -0,0 +1,95 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import com.vuzix.securityviewer.model.StreamCache;
+
+@Dao
+public interface StreamCacheDAO {
+
+    /**
+     * Add operation for the database, ignored if the camera already has a cache entry
+     * @param streamCache Cache entry to add to the database
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    void add(StreamCache streamCache);
+
+    /**
+     * Method to store a freshly resolved stream URI for a camera. The decoder path learned for the
+     * camera is forgotten when the encoding changed
+     * @param cameraUID UID of the camera the URI belongs to
+     * @param profileToken Media profile token used to resolve the URI
+     * @param streamUri Resolved stream URI
+     * @param encoding Video encoding of the profile, null if unknown
+     * @param resolvedAt Time the URI was resolved in milliseconds since epoch
+     */
+    @Query("UPDATE stream_cache SET profileToken = :profileToken, streamUri = :streamUri, resolvedAt = :resolvedAt, "
+            + "decoderPath = CASE WHEN encoding IS :encoding THEN decoderPath ELSE 0 END, encoding = :encoding "
+            + "WHERE cameraUID = :cameraUID")
+    void updateStreamUri(int cameraUID, String profileToken, String streamUri, String encoding, long resolvedAt);
+
+    /**
+     * Method to drop a stream URI that is known to be bad, keeps the rest of the entry
+     * @param cameraUID UID of the camera whose URI should be invalidated
+     */
+    @Query("UPDATE stream_cache SET streamUri = NULL WHERE cameraUID = :cameraUID")
+    void invalidateStreamUri(int cameraUID);
+
+    /**
+     * Method to remember the network caching learned for a camera
+     * @param cameraUID UID of the camera
+     * @param networkCaching Caching in milliseconds
+     */
+    @Query("UPDATE stream_cache SET networkCaching = :networkCaching WHERE cameraUID = :cameraUID")
+    void updateNetworkCaching(int cameraUID, int networkCaching);
+
+    /**
+     * Method to remember which decoder path produced frames for a camera
+     * @param cameraUID UID of the camera
+     * @param decoderPath One of the DecoderPolicy.DECODER_ constants
+     */
+    @Query("UPDATE stream_cache SET decoderPath = :decoderPath WHERE cameraUID = :cameraUID")
+    void updateDecoderPath(int cameraUID, int decoderPath);
+
+    /**
+     * Method to get the cache entry for a specific camera
+     * @param cameraUID UID of the camera
+     * @return StreamCache for the camera, null if not found
+     */
+    @Query("SELECT * FROM stream_cache WHERE cameraUID = :cameraUID")
+    StreamCache getStreamCache(int cameraUID);
+}
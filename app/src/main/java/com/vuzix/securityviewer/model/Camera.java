@@ -33,6 +33,7 @@ package com.vuzix.securityviewer.model;
 
 import android.content.Context;
 import android.content.Intent;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.room.Entity;
@@ -41,6 +42,8 @@ import androidx.room.PrimaryKey;
 
 import com.vuzix.securityviewer.StreamActivity;
 
+import java.util.List;
+
 @Entity(tableName = "cameras")
 public class Camera{
 
@@ -57,11 +60,10 @@ public class Camera{
     private String username;
     private String password;
     private String network;
+    private String streamProfileToken;
     @Ignore
     private boolean isLocked;
     @Ignore
-    private boolean selected = false;
-    @Ignore
     public final static int ERROR_UNAUTHORIZED = 401;
 
     /**
@@ -159,19 +161,19 @@ public class Camera{
     }
 
     /**
-     * Set locked status for this camera
-     * @param locked Camera authentication required
+     * Set the media profile to stream for this camera
+     * @param streamProfileToken Token of the pinned media profile, null for automatic selection
      */
-    public void setLocked(boolean locked) {
-        isLocked = locked;
+    public void setStreamProfileToken(String streamProfileToken){
+        this.streamProfileToken = streamProfileToken;
     }
 
     /**
-     * Set camera as the selected camera in the recycler view
-     * @param selected Selected status for the camera
+     * Set locked status for this camera
+     * @param locked Camera authentication required
      */
-    public void setSelected(boolean selected){
-        this.selected = selected;
+    public void setLocked(boolean locked) {
+        isLocked = locked;
     }
 
     /**
@@ -248,6 +250,12 @@ public class Camera{
      */
     public String getNetwork() { return this.network; }
 
+    /**
+     * Get the media profile to stream for this camera
+     * @return Token of the pinned media profile, null for automatic selection
+     */
+    public String getStreamProfileToken() { return this.streamProfileToken; }
+
     /**
      * Get authentication status for this camera
      * @return Locked status for this camera
@@ -256,12 +264,6 @@ public class Camera{
         return isLocked;
     }
 
-    /**
-     * Get selected status for the recycler view
-     * @return Selected status for the recycler view
-     */
-    public boolean isSelected() { return selected; }
-
     /**
      * Check to see if an object is equal to this camera
      * @param obj An object that can be a camera
@@ -296,13 +298,33 @@ public class Camera{
      * @param context Context that is looking to open the camera
      */
     public void openStream(Context context){
+        openStream(context, null);
+    }
+
+    /**
+     * Method for opening a new StreamActivity for viewing the camera, the stream can switch to the
+     * other cameras of the carousel
+     * @param context Context that is looking to open the camera
+     * @param carousel Cameras in carousel order, null if the stream should only show this camera
+     */
+    public void openStream(Context context, List<Camera> carousel){
         Log.d(this.hostName, "Opening stream");
         final Intent intent = new Intent(context, StreamActivity.class);
         intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+        intent.putExtra(StreamActivity.EXTRA_UID, this.getUID());
         intent.putExtra(StreamActivity.EXTRA_HOSTNAME, this.getHostName());
         intent.putExtra(StreamActivity.EXTRA_CAMERA_NAME, this.getPresentableName());
         intent.putExtra(StreamActivity.EXTRA_USERNAME, this.getUsername());
         intent.putExtra(StreamActivity.EXTRA_PASSWORD, this.getPassword());
+        intent.putExtra(StreamActivity.EXTRA_PROFILE_TOKEN, this.getStreamProfileToken());
+        intent.putExtra(StreamActivity.EXTRA_OPEN_TIME, SystemClock.elapsedRealtime());
+        if(carousel != null){
+            int[] carouselUIDs = new int[carousel.size()];
+            for(int i = 0; i < carousel.size(); i++){
+                carouselUIDs[i] = carousel.get(i).getUID();
+            }
+            intent.putExtra(StreamActivity.EXTRA_CAROUSEL, carouselUIDs);
+        }
         context.startActivity(intent);
     }
 }
@@ -0,0 +1,64 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.model;
+
+/**
+ * Result of the last liveness check of a camera
+ */
+public class CameraHealth {
+
+    public enum Status { ONLINE, OFFLINE }
+
+    private final Status status;
+    private final long latency;
+    private final long checkedAt;
+
+    /**
+     * Constructor for CameraHealth
+     * @param status Whether the camera answered
+     * @param latency Time the camera took to answer in ms, -1 when offline
+     * @param checkedAt System time of the check
+     */
+    public CameraHealth(Status status, long latency, long checkedAt) {
+        this.status = status;
+        this.latency = latency;
+        this.checkedAt = checkedAt;
+    }
+
+    public Status getStatus() { return this.status; }
+
+    public long getLatency() { return this.latency; }
+
+    public long getCheckedAt() { return this.checkedAt; }
+
+    public boolean isOnline() { return this.status == Status.ONLINE; }
+}
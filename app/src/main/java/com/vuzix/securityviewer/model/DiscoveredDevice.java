@@ -0,0 +1,200 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.model;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+@Entity(tableName = "discovered_devices",
+        primaryKeys = {"ssid", "hostName"})
+public class DiscoveredDevice {
+
+    @NonNull
+    private String ssid = "";
+    @NonNull
+    private String hostName = "";
+    private boolean locked;
+    private String model;
+    private String firmwareVersion;
+    private String hardwareID;
+    private String manufacturer;
+    private String serialNumber;
+    private long lastSeen;
+
+    /**
+     * Creates the cache entry of a discovered camera
+     * @param camera Discovered camera, unsubscribed
+     * @param lastSeen System time the camera last answered
+     * @return Cache entry for the camera's network
+     */
+    public static DiscoveredDevice fromCamera(Camera camera, long lastSeen) {
+        DiscoveredDevice device = new DiscoveredDevice();
+        device.setSsid(camera.getNetwork() == null ? "" : camera.getNetwork());
+        device.setHostName(camera.getHostName());
+        // Credentials are never cached, so a camera unlocked by the user is cached as locked
+        device.setLocked(camera.isLocked() || camera.getUsername() != null);
+        device.setModel(camera.getModel());
+        device.setFirmwareVersion(camera.getFirmwareVersion());
+        device.setHardwareID(camera.getHardwareID());
+        device.setManufacturer(camera.getManufacturer());
+        device.setSerialNumber(camera.getSerialNumber());
+        device.setLastSeen(lastSeen);
+        return device;
+    }
+
+    /**
+     * Creates an unsubscribed camera from the cache entry
+     * @return Camera with the cached device information
+     */
+    public Camera toCamera() {
+        Camera camera = new Camera();
+        camera.setNetwork(ssid);
+        camera.setHostName(hostName);
+        camera.setLocked(locked);
+        camera.setModel(model);
+        camera.setFirmwareVersion(firmwareVersion);
+        camera.setHardwareID(hardwareID);
+        camera.setManufacturer(manufacturer);
+        camera.setSerialNumber(serialNumber);
+        return camera;
+    }
+
+    /**
+     * Set the SSID of the network the camera was discovered on
+     * @param ssid SSID of the network
+     */
+    public void setSsid(@NonNull String ssid) { this.ssid = ssid; }
+
+    /**
+     * Set the host name of the camera
+     * @param hostName Host name of the camera
+     */
+    public void setHostName(@NonNull String hostName) { this.hostName = hostName; }
+
+    /**
+     * Set whether the camera requires credentials
+     * @param locked True if the camera refused GetDeviceInformation
+     */
+    public void setLocked(boolean locked) { this.locked = locked; }
+
+    /**
+     * Set the model of the camera
+     * @param model Model of the camera
+     */
+    public void setModel(String model) { this.model = model; }
+
+    /**
+     * Set the firmware version of the camera
+     * @param firmwareVersion Firmware version of the camera
+     */
+    public void setFirmwareVersion(String firmwareVersion) { this.firmwareVersion = firmwareVersion; }
+
+    /**
+     * Set the hardware ID of the camera
+     * @param hardwareID Hardware ID of the camera
+     */
+    public void setHardwareID(String hardwareID) { this.hardwareID = hardwareID; }
+
+    /**
+     * Set the manufacturer of the camera
+     * @param manufacturer Manufacturer of the camera
+     */
+    public void setManufacturer(String manufacturer) { this.manufacturer = manufacturer; }
+
+    /**
+     * Set the serial number of the camera
+     * @param serialNumber Serial number of the camera
+     */
+    public void setSerialNumber(String serialNumber) { this.serialNumber = serialNumber; }
+
+    /**
+     * Set when the camera last answered
+     * @param lastSeen System time the camera last answered
+     */
+    public void setLastSeen(long lastSeen) { this.lastSeen = lastSeen; }
+
+    /**
+     * Get the SSID of the network the camera was discovered on
+     * @return SSID of the network
+     */
+    @NonNull
+    public String getSsid() { return this.ssid; }
+
+    /**
+     * Get the host name of the camera
+     * @return Host name of the camera
+     */
+    @NonNull
+    public String getHostName() { return this.hostName; }
+
+    /**
+     * Get whether the camera requires credentials
+     * @return True if the camera refused GetDeviceInformation
+     */
+    public boolean isLocked() { return this.locked; }
+
+    /**
+     * Get the model of the camera
+     * @return Model of the camera
+     */
+    public String getModel() { return this.model; }
+
+    /**
+     * Get the firmware version of the camera
+     * @return Firmware version of the camera
+     */
+    public String getFirmwareVersion() { return this.firmwareVersion; }
+
+    /**
+     * Get the hardware ID of the camera
+     * @return Hardware ID of the camera
+     */
+    public String getHardwareID() { return this.hardwareID; }
+
+    /**
+     * Get the manufacturer of the camera
+     * @return Manufacturer of the camera
+     */
+    public String getManufacturer() { return this.manufacturer; }
+
+    /**
+     * Get the serial number of the camera
+     * @return Serial number of the camera
+     */
+    public String getSerialNumber() { return this.serialNumber; }
+
+    /**
+     * Get when the camera last answered
+     * @return System time the camera last answered
+     */
+    public long getLastSeen() { return this.lastSeen; }
+}
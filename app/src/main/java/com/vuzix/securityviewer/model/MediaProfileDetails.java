@@ -0,0 +1,136 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.model;
+
+import be.teletask.onvif.models.OnvifMediaProfile;
+
+/**
+ * ONVIF media profile along with the video encoder configuration the camera reported for it
+ */
+public class MediaProfileDetails {
+
+    private final String name;
+    private final String token;
+    private String encoding;
+    private int width;
+    private int height;
+    private int bitrateLimit;
+    private int frameRateLimit;
+
+    /**
+     * Constructor for MediaProfileDetails
+     * @param name Name of the media profile
+     * @param token Token of the media profile
+     */
+    public MediaProfileDetails(String name, String token) {
+        this.name = name;
+        this.token = token;
+    }
+
+    /**
+     * Set the video encoding of this profile
+     * @param encoding Encoding as reported by the camera (H264, H265, JPEG, MPEG4)
+     */
+    public void setEncoding(String encoding) { this.encoding = encoding; }
+
+    /**
+     * Set the video resolution of this profile
+     * @param width Width in pixels
+     * @param height Height in pixels
+     */
+    public void setResolution(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    /**
+     * Set the bitrate limit of this profile
+     * @param bitrateLimit Bitrate limit in kbps
+     */
+    public void setBitrateLimit(int bitrateLimit) { this.bitrateLimit = bitrateLimit; }
+
+    /**
+     * Set the frame rate limit of this profile
+     * @param frameRateLimit Frame rate limit in frames per second
+     */
+    public void setFrameRateLimit(int frameRateLimit) { this.frameRateLimit = frameRateLimit; }
+
+    /**
+     * Get the name of this profile
+     * @return Name of the profile
+     */
+    public String getName() { return this.name; }
+
+    /**
+     * Get the token of this profile
+     * @return Token of the profile
+     */
+    public String getToken() { return this.token; }
+
+    /**
+     * Get the video encoding of this profile
+     * @return Encoding of the profile, null if the profile has no video encoder
+     */
+    public String getEncoding() { return this.encoding; }
+
+    /**
+     * Get the video width of this profile
+     * @return Width in pixels, 0 if unknown
+     */
+    public int getWidth() { return this.width; }
+
+    /**
+     * Get the video height of this profile
+     * @return Height in pixels, 0 if unknown
+     */
+    public int getHeight() { return this.height; }
+
+    /**
+     * Get the bitrate limit of this profile
+     * @return Bitrate limit in kbps, 0 if unknown
+     */
+    public int getBitrateLimit() { return this.bitrateLimit; }
+
+    /**
+     * Get the frame rate limit of this profile
+     * @return Frame rate limit in frames per second, 0 if unknown
+     */
+    public int getFrameRateLimit() { return this.frameRateLimit; }
+
+    /**
+     * Convert to the profile object used by the ONVIF library for stream URI requests
+     * @return OnvifMediaProfile with the same name and token
+     */
+    public OnvifMediaProfile toOnvifMediaProfile() {
+        return new OnvifMediaProfile(name, token);
+    }
+}
@@ -0,0 +1,98 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.model;
+
+/**
+ * Playback statistics of one sampling interval, the counters hold what happened during the
+ * interval rather than VLC's running totals
+ */
+public class PlaybackSample {
+
+    private final long timestamp;
+    private final String cameraName;
+    private final int inputBitrate;
+    private final int demuxBitrate;
+    private final int decodedVideo;
+    private final int displayedPictures;
+    private final int lostPictures;
+    private final int demuxCorrupted;
+    private final int demuxDiscontinuities;
+    private final int lostAudioBuffers;
+
+    /**
+     * Constructor for PlaybackSample
+     * @param timestamp System time the sample was taken at
+     * @param cameraName Name of the camera that was playing
+     * @param inputBitrate Bitrate received from the network in kbit/s
+     * @param demuxBitrate Bitrate read by the demuxer in kbit/s
+     * @param decodedVideo Video frames decoded
+     * @param displayedPictures Pictures displayed
+     * @param lostPictures Pictures dropped by the decoder or video output
+     * @param demuxCorrupted Corrupted packets seen by the demuxer
+     * @param demuxDiscontinuities Discontinuities seen by the demuxer
+     * @param lostAudioBuffers Audio buffers dropped
+     */
+    public PlaybackSample(long timestamp, String cameraName, int inputBitrate, int demuxBitrate,
+                          int decodedVideo, int displayedPictures, int lostPictures, int demuxCorrupted,
+                          int demuxDiscontinuities, int lostAudioBuffers) {
+        this.timestamp = timestamp;
+        this.cameraName = cameraName;
+        this.inputBitrate = inputBitrate;
+        this.demuxBitrate = demuxBitrate;
+        this.decodedVideo = decodedVideo;
+        this.displayedPictures = displayedPictures;
+        this.lostPictures = lostPictures;
+        this.demuxCorrupted = demuxCorrupted;
+        this.demuxDiscontinuities = demuxDiscontinuities;
+        this.lostAudioBuffers = lostAudioBuffers;
+    }
+
+    public long getTimestamp() { return this.timestamp; }
+
+    public String getCameraName() { return this.cameraName; }
+
+    public int getInputBitrate() { return this.inputBitrate; }
+
+    public int getDemuxBitrate() { return this.demuxBitrate; }
+
+    public int getDecodedVideo() { return this.decodedVideo; }
+
+    public int getDisplayedPictures() { return this.displayedPictures; }
+
+    public int getLostPictures() { return this.lostPictures; }
+
+    public int getDemuxCorrupted() { return this.demuxCorrupted; }
+
+    public int getDemuxDiscontinuities() { return this.demuxDiscontinuities; }
+
+    public int getLostAudioBuffers() { return this.lostAudioBuffers; }
+}
@@ -0,0 +1,84 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.model;
+
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+
+@Entity(tableName = "startup_latency",
+        primaryKeys = {"cameraUID", "bucket"},
+        foreignKeys = @ForeignKey(entity = Camera.class,
+                parentColumns = "UID",
+                childColumns = "cameraUID",
+                onDelete = ForeignKey.CASCADE))
+public class StartupLatencyBucket {
+
+    private int cameraUID;
+    private int bucket;
+    private int count;
+
+    /**
+     * Set the UID of the camera this bucket belongs to
+     * @param cameraUID UID of the camera
+     */
+    public void setCameraUID(int cameraUID) { this.cameraUID = cameraUID; }
+
+    /**
+     * Set the histogram bucket, see LatencyHistogram for the bucket bounds
+     * @param bucket Index of the bucket
+     */
+    public void setBucket(int bucket) { this.bucket = bucket; }
+
+    /**
+     * Set the number of stream opens that fell into this bucket
+     * @param count Number of stream opens
+     */
+    public void setCount(int count) { this.count = count; }
+
+    /**
+     * Get the UID of the camera this bucket belongs to
+     * @return UID of the camera
+     */
+    public int getCameraUID() { return this.cameraUID; }
+
+    /**
+     * Get the histogram bucket, see LatencyHistogram for the bucket bounds
+     * @return Index of the bucket
+     */
+    public int getBucket() { return this.bucket; }
+
+    /**
+     * Get the number of stream opens that fell into this bucket
+     * @return Number of stream opens
+     */
+    public int getCount() { return this.count; }
+}
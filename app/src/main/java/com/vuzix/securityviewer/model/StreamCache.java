@@ -0,0 +1,140 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.model;
+
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.PrimaryKey;
+
+@Entity(tableName = "stream_cache",
+        foreignKeys = @ForeignKey(entity = Camera.class,
+                parentColumns = "UID",
+                childColumns = "cameraUID",
+                onDelete = ForeignKey.CASCADE))
+public class StreamCache {
+
+    @PrimaryKey
+    private int cameraUID;
+    private String profileToken;
+    private String streamUri;
+    private long resolvedAt;
+    @ColumnInfo(defaultValue = "0")
+    private int networkCaching;
+    private String encoding;
+    @ColumnInfo(defaultValue = "0")
+    private int decoderPath;
+
+    /**
+     * Set the UID of the camera this cache entry belongs to
+     * @param cameraUID UID of the camera
+     */
+    public void setCameraUID(int cameraUID) { this.cameraUID = cameraUID; }
+
+    /**
+     * Set the media profile token the stream URI was resolved with
+     * @param profileToken ONVIF media profile token
+     */
+    public void setProfileToken(String profileToken) { this.profileToken = profileToken; }
+
+    /**
+     * Set the resolved stream URI
+     * @param streamUri RTSP URI of the stream, null if invalidated
+     */
+    public void setStreamUri(String streamUri) { this.streamUri = streamUri; }
+
+    /**
+     * Set the time the stream URI was resolved
+     * @param resolvedAt Time in milliseconds since epoch
+     */
+    public void setResolvedAt(long resolvedAt) { this.resolvedAt = resolvedAt; }
+
+    /**
+     * Set the network caching learned for the camera
+     * @param networkCaching Caching in milliseconds, 0 if not learned yet
+     */
+    public void setNetworkCaching(int networkCaching) { this.networkCaching = networkCaching; }
+
+    /**
+     * Set the video encoding of the profile the stream URI was resolved with
+     * @param encoding Encoding as reported by the camera, null if unknown
+     */
+    public void setEncoding(String encoding) { this.encoding = encoding; }
+
+    /**
+     * Set the decoder path that produced frames for the camera
+     * @param decoderPath One of the DecoderPolicy.DECODER_ constants
+     */
+    public void setDecoderPath(int decoderPath) { this.decoderPath = decoderPath; }
+
+    /**
+     * Get the UID of the camera this cache entry belongs to
+     * @return UID of the camera
+     */
+    public int getCameraUID() { return this.cameraUID; }
+
+    /**
+     * Get the media profile token the stream URI was resolved with
+     * @return ONVIF media profile token
+     */
+    public String getProfileToken() { return this.profileToken; }
+
+    /**
+     * Get the resolved stream URI
+     * @return RTSP URI of the stream, null if invalidated
+     */
+    public String getStreamUri() { return this.streamUri; }
+
+    /**
+     * Get the time the stream URI was resolved
+     * @return Time in milliseconds since epoch
+     */
+    public long getResolvedAt() { return this.resolvedAt; }
+
+    /**
+     * Get the network caching learned for the camera
+     * @return Caching in milliseconds, 0 if not learned yet
+     */
+    public int getNetworkCaching() { return this.networkCaching; }
+
+    /**
+     * Get the video encoding of the profile the stream URI was resolved with
+     * @return Encoding as reported by the camera, null if unknown
+     */
+    public String getEncoding() { return this.encoding; }
+
+    /**
+     * Get the decoder path that produced frames for the camera
+     * @return One of the DecoderPolicy.DECODER_ constants, DECODER_UNKNOWN if not learned yet
+     */
+    public int getDecoderPath() { return this.decoderPath; }
+}
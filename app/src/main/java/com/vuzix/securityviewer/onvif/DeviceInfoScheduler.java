@@ -0,0 +1,301 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.onvif;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import java.util.ArrayDeque;
+import java.util.HashSet;
+
+import be.teletask.onvif.listeners.OnvifDeviceInformationListener;
+import be.teletask.onvif.listeners.OnvifResponseListener;
+import be.teletask.onvif.models.OnvifDevice;
+import be.teletask.onvif.models.OnvifDeviceInformation;
+import be.teletask.onvif.responses.OnvifResponse;
+import okhttp3.Call;
+
+/**
+ * Fetches the device information of discovered cameras with a cap on concurrent requests, so a
+ * large site doesn't flood the access point. Every attempt has a deadline that cancels its
+ * request, and network errors, server errors and missed deadlines are retried with a growing
+ * delay. A 401 marks a camera as locked and is never retried. Every camera handed to the scheduler ends in exactly one callback,
+ * so the number of lookups in flight and done is always accurate. Callbacks arrive on the main
+ * thread
+ */
+public class DeviceInfoScheduler {
+
+    private static final String TAG = "DeviceInfoScheduler";
+    private static final int ERROR_UNAUTHORIZED = 401;
+    private static final int ERROR_DEADLINE = -2;
+    private static final long RETRY_DELAY = 1000;
+
+    /**
+     * Callback for the result of each lookup and the overall progress, called on the main thread
+     */
+    public interface DeviceInfoListener {
+        /**
+         * Called with the information of a camera
+         * @param onvifDevice Camera that answered
+         * @param deviceInformation Information of the camera
+         */
+        void onDeviceInformation(OnvifDevice onvifDevice, OnvifDeviceInformation deviceInformation);
+
+        /**
+         * Called when a camera requires credentials
+         * @param onvifDevice Camera that refused the request
+         */
+        void onDeviceLocked(OnvifDevice onvifDevice);
+
+        /**
+         * Called when a camera didn't answer after all attempts
+         * @param onvifDevice Camera that failed
+         * @param errorCode Error of the last attempt, -1 for network errors, -2 for a missed deadline
+         */
+        void onDeviceFailed(OnvifDevice onvifDevice, int errorCode);
+
+        /**
+         * Called whenever a lookup starts or ends
+         * @param inFlight Lookups waiting for an answer, including those waiting for a retry
+         * @param completed Lookups that ended
+         * @param total Lookups handed to the scheduler
+         */
+        void onProgress(int inFlight, int completed, int total);
+    }
+
+    private final int maxConcurrent;
+    private final long deadline;
+    private final int maxAttempts;
+    private final DeviceInfoListener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final ArrayDeque<Lookup> pendingLookups = new ArrayDeque<>();
+    private final HashSet<Call> runningCalls = new HashSet<>();
+    private int running;
+    private int inFlight;
+    private int completed;
+    private int total;
+    private int generation;
+
+    /**
+     * Constructor for DeviceInfoScheduler
+     * @param maxConcurrent Most requests running at once
+     * @param deadline Time an attempt may take in ms
+     * @param maxAttempts Attempts per camera before it counts as failed
+     * @param listener Listener for results and progress
+     */
+    public DeviceInfoScheduler(int maxConcurrent, long deadline, int maxAttempts, DeviceInfoListener listener) {
+        this.maxConcurrent = maxConcurrent;
+        this.deadline = deadline;
+        this.maxAttempts = maxAttempts;
+        this.listener = listener;
+    }
+
+    /**
+     * Queues the lookup of a camera, has to be called on the main thread
+     * @param onvifDevice Camera to look up
+     */
+    public void enqueue(OnvifDevice onvifDevice) {
+        pendingLookups.add(new Lookup(onvifDevice, generation));
+        total++;
+        inFlight++;
+        notifyProgress();
+        startPendingLookups();
+    }
+
+    /**
+     * Drops all queued lookups, cancels the running requests and resets the counts. Has to be
+     * called on the main thread
+     */
+    public void cancel() {
+        generation++;
+        handler.removeCallbacksAndMessages(null);
+        pendingLookups.clear();
+        for (Call call : runningCalls) {
+            call.cancel();
+        }
+        runningCalls.clear();
+        running = 0;
+        inFlight = 0;
+        completed = 0;
+        total = 0;
+    }
+
+    /**
+     * Whether any lookup has not ended yet
+     * @return True while lookups are queued, running or waiting for a retry
+     */
+    public boolean isBusy() {
+        return inFlight > 0;
+    }
+
+    public int getInFlight() { return this.inFlight; }
+
+    public int getCompleted() { return this.completed; }
+
+    public int getTotal() { return this.total; }
+
+    /**
+     * Starts queued lookups until maxConcurrent requests are running
+     */
+    private void startPendingLookups() {
+        while (running < maxConcurrent && !pendingLookups.isEmpty()) {
+            pendingLookups.poll().start();
+        }
+    }
+
+    /**
+     * Reports the current counts
+     */
+    private void notifyProgress() {
+        listener.onProgress(inFlight, completed, total);
+    }
+
+    /**
+     * Lookup of one camera across its attempts
+     */
+    private class Lookup {
+
+        private final OnvifDevice onvifDevice;
+        private final int lookupGeneration;
+        private Runnable deadlineRunnable;
+        private Call call;
+        private int attempt;
+        private boolean attemptRunning;
+
+        /**
+         * Constructor for Lookup
+         * @param onvifDevice Camera to look up
+         * @param lookupGeneration Generation of the scheduler the lookup belongs to
+         */
+        Lookup(OnvifDevice onvifDevice, int lookupGeneration) {
+            this.onvifDevice = onvifDevice;
+            this.lookupGeneration = lookupGeneration;
+        }
+
+        /**
+         * Sends the next attempt and arms its deadline
+         */
+        void start() {
+            int currentAttempt = ++attempt;
+            attemptRunning = true;
+            running++;
+            deadlineRunnable = () -> onAttemptFailed(currentAttempt, ERROR_DEADLINE);
+            handler.postDelayed(deadlineRunnable, deadline);
+            call = OnvifClient.getInstance().getDeviceInformation(onvifDevice, new OnvifDeviceInformationListener() {
+                @Override
+                public void onDeviceInformationReceived(OnvifDevice onvifDevice, OnvifDeviceInformation deviceInformation) {
+                    handler.post(() -> onAttemptSucceeded(currentAttempt, deviceInformation));
+                }
+            }, new OnvifResponseListener() {
+                @Override
+                public void onResponse(OnvifDevice onvifDevice, OnvifResponse onvifResponse) {
+                    // Not used as the parsed device information is all we need.
+                }
+
+                @Override
+                public void onError(OnvifDevice onvifDevice, int errorCode, String errorMessage) {
+                    handler.post(() -> onAttemptFailed(currentAttempt, errorCode));
+                }
+            });
+            runningCalls.add(call);
+        }
+
+        /**
+         * Ends an attempt if it's still the running one
+         * @param attemptNumber Attempt that ended
+         * @return False if the attempt was superseded, already ended or belongs to a cancelled run
+         */
+        private boolean finishAttempt(int attemptNumber) {
+            if (lookupGeneration != generation || attemptNumber != attempt || !attemptRunning) {
+                return false;
+            }
+            attemptRunning = false;
+            running--;
+            handler.removeCallbacks(deadlineRunnable);
+            // Gives up on the request if the deadline ended the attempt, a no-op once answered
+            call.cancel();
+            runningCalls.remove(call);
+            return true;
+        }
+
+        /**
+         * Ends the lookup and starts the next queued one
+         */
+        private void complete() {
+            inFlight--;
+            completed++;
+            notifyProgress();
+            startPendingLookups();
+        }
+
+        /**
+         * Reports the information of the camera, runs on the main thread
+         * @param attemptNumber Attempt that succeeded
+         * @param deviceInformation Information of the camera
+         */
+        private void onAttemptSucceeded(int attemptNumber, OnvifDeviceInformation deviceInformation) {
+            if (finishAttempt(attemptNumber)) {
+                listener.onDeviceInformation(onvifDevice, deviceInformation);
+                complete();
+            }
+        }
+
+        /**
+         * Retries transient failures and reports the rest, runs on the main thread
+         * @param attemptNumber Attempt that failed
+         * @param errorCode Error of the attempt
+         */
+        private void onAttemptFailed(int attemptNumber, int errorCode) {
+            if (!finishAttempt(attemptNumber)) {
+                return;
+            }
+            if (errorCode == ERROR_UNAUTHORIZED) {
+                listener.onDeviceLocked(onvifDevice);
+                complete();
+                return;
+            }
+            boolean transientError = errorCode == -1 || errorCode == ERROR_DEADLINE || errorCode >= 500;
+            if (transientError && attempt < maxAttempts) {
+                Log.d(TAG, onvifDevice.getHostName() + " failed with " + errorCode + ", retrying");
+                handler.postDelayed(() -> {
+                    pendingLookups.add(this);
+                    startPendingLookups();
+                }, RETRY_DELAY * attempt);
+                startPendingLookups();
+                return;
+            }
+            listener.onDeviceFailed(onvifDevice, errorCode);
+            complete();
+        }
+    }
+}
@@ -0,0 +1,137 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.onvif;
+
+import android.util.Log;
+
+import com.burgstaller.okhttp.digest.CachingAuthenticator;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+
+import okhttp3.Authenticator;
+import okhttp3.Connection;
+import okhttp3.HttpUrl;
+import okhttp3.Interceptor;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.Route;
+
+/**
+ * Remembers, per camera and user, the authenticator that last answered a Digest challenge so later
+ * requests can carry an Authorization header built from the cached realm and nonce instead of going
+ * out unauthenticated and waiting for a 401 first. An entry is only used by the client of the
+ * authenticator that cached it, so a request with new credentials never goes out with the old ones.
+ *
+ * A cached nonce may expire on the camera. Cameras that flag it with stale=true are answered by the
+ * Digest authenticator itself, cameras that simply reply 401 have their entry dropped and the
+ * request is sent again without the header so a fresh challenge is negotiated.
+ */
+class DigestChallengeCache {
+
+    private static final String TAG = "DigestChallengeCache";
+    private static final String HEADER_AUTHORIZATION = "Authorization";
+    private static final int HTTP_UNAUTHORIZED = 401;
+
+    private final ConcurrentHashMap<String, CachingAuthenticator> authenticators = new ConcurrentHashMap<>();
+
+    /**
+     * Wraps a Digest authenticator so every challenge it answers is cached for the host and user
+     * @param authenticator Authenticator holding the credentials of a single camera
+     * @param username User the authenticator signs in as
+     * @return Authenticator to install on the client of that camera
+     */
+    Authenticator cachingAuthenticator(CachingAuthenticator authenticator, String username) {
+        return (route, response) -> {
+            Request authenticated = authenticator.authenticate(route, response);
+            if (authenticated != null && authenticated.header(HEADER_AUTHORIZATION) != null) {
+                authenticators.put(getKey(authenticated.url(), username), authenticator);
+            }
+            return authenticated;
+        };
+    }
+
+    /**
+     * Get the interceptor that adds the cached Authorization header to the requests of a client
+     * @param authenticator Authenticator installed on the same client
+     * @param username User the authenticator signs in as
+     * @return Application interceptor to install on the client
+     */
+    Interceptor preemptiveInterceptor(CachingAuthenticator authenticator, String username) {
+        return chain -> intercept(chain, authenticator, username);
+    }
+
+    /**
+     * Sends the request with the cached Authorization header if the client's own authenticator
+     * cached one, falling back to an unauthenticated request if the camera rejects it
+     * @param chain Interceptor chain
+     * @param clientAuthenticator Authenticator of the client sending the request
+     * @param username User the authenticator signs in as
+     * @return Response from the camera
+     * @throws IOException On network errors
+     */
+    private Response intercept(Interceptor.Chain chain, CachingAuthenticator clientAuthenticator,
+                               String username) throws IOException {
+        Request request = chain.request();
+        String key = getKey(request.url(), username);
+        CachingAuthenticator authenticator = authenticators.get(key);
+        if (authenticator != clientAuthenticator || request.header(HEADER_AUTHORIZATION) != null) {
+            // Nothing cached, or cached with a password that has since changed
+            return chain.proceed(request);
+        }
+
+        Connection connection = chain.connection();
+        Route route = (connection != null) ? connection.route() : null;
+        Request authenticated = authenticator.authenticateWithState(route, request);
+        if (authenticated == null) {
+            return chain.proceed(request);
+        }
+
+        Response response = chain.proceed(authenticated);
+        if (response.code() == HTTP_UNAUTHORIZED && authenticators.remove(key, authenticator)) {
+            Log.d(TAG, "Cached challenge rejected by " + key + ", negotiating a new one");
+            response.close();
+            response = chain.proceed(request);
+        }
+        return response;
+    }
+
+    /**
+     * Get the cache key of a host and user
+     * @param url Any URL of the host
+     * @param username User signing in
+     * @return User, host and port
+     */
+    private static String getKey(HttpUrl url, String username) {
+        return username + "@" + url.host() + ":" + url.port();
+    }
+}
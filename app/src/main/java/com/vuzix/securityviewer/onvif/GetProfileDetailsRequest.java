@@ -0,0 +1,60 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.onvif;
+
+import be.teletask.onvif.models.OnvifType;
+import be.teletask.onvif.requests.OnvifRequest;
+
+/**
+ * GetProfiles request sent as a custom request so the full response, including the video encoder
+ * configuration of every profile, is handed back to the OnvifResponseListener for parsing
+ */
+public class GetProfileDetailsRequest implements OnvifRequest {
+
+    /**
+     * Get the SOAP body for the request
+     * @return GetProfiles body
+     */
+    @Override
+    public String getXml() {
+        return "<GetProfiles xmlns=\"http://www.onvif.org/ver10/media/wsdl\"/>";
+    }
+
+    /**
+     * Custom type so the library leaves parsing to us
+     * @return OnvifType.CUSTOM
+     */
+    @Override
+    public OnvifType getType() {
+        return OnvifType.CUSTOM;
+    }
+}
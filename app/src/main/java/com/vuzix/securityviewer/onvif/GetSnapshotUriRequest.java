@@ -0,0 +1,72 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.onvif;
+
+import be.teletask.onvif.models.OnvifType;
+import be.teletask.onvif.requests.OnvifRequest;
+
+/**
+ * GetSnapshotUri request for a media profile, sent as a custom request since the library has no
+ * support for snapshots. The response is read with SnapshotUriParser
+ */
+public class GetSnapshotUriRequest implements OnvifRequest {
+
+    private final String profileToken;
+
+    /**
+     * Constructor for GetSnapshotUriRequest
+     * @param profileToken Token of the media profile to get the snapshot URI of
+     */
+    public GetSnapshotUriRequest(String profileToken) {
+        this.profileToken = profileToken;
+    }
+
+    /**
+     * Get the SOAP body for the request
+     * @return GetSnapshotUri body
+     */
+    @Override
+    public String getXml() {
+        return "<GetSnapshotUri xmlns=\"http://www.onvif.org/ver10/media/wsdl\">"
+                + "<ProfileToken>" + profileToken + "</ProfileToken>"
+                + "</GetSnapshotUri>";
+    }
+
+    /**
+     * Custom type so the library leaves parsing to us
+     * @return OnvifType.CUSTOM
+     */
+    @Override
+    public OnvifType getType() {
+        return OnvifType.CUSTOM;
+    }
+}
@@ -0,0 +1,321 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.onvif;
+
+import android.util.Log;
+
+import com.burgstaller.okhttp.digest.Credentials;
+import com.burgstaller.okhttp.digest.DigestAuthenticator;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import be.teletask.onvif.OnvifXMLBuilder;
+import be.teletask.onvif.listeners.OnvifDeviceInformationListener;
+import be.teletask.onvif.listeners.OnvifMediaProfilesListener;
+import be.teletask.onvif.listeners.OnvifMediaStreamURIListener;
+import be.teletask.onvif.listeners.OnvifResponseListener;
+import be.teletask.onvif.models.OnvifDevice;
+import be.teletask.onvif.models.OnvifMediaProfile;
+import be.teletask.onvif.models.OnvifServices;
+import be.teletask.onvif.parsers.GetDeviceInformationParser;
+import be.teletask.onvif.parsers.GetMediaProfilesParser;
+import be.teletask.onvif.parsers.GetMediaStreamParser;
+import be.teletask.onvif.requests.GetDeviceInformationRequest;
+import be.teletask.onvif.requests.GetMediaProfilesRequest;
+import be.teletask.onvif.requests.GetMediaStreamRequest;
+import be.teletask.onvif.requests.OnvifRequest;
+import be.teletask.onvif.responses.OnvifResponse;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.ConnectionPool;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+/**
+ * Application-wide replacement for OnvifManager. OnvifManager builds a new HTTP stack for every
+ * instance, so each screen opened new TCP connections to the cameras. All requests sent through
+ * OnvifClient share one connection pool that keeps connections to each camera alive between SOAP
+ * calls. Every camera gets its own Digest authenticator on top of the shared pool, so requests to
+ * different cameras never race on credentials, and the challenge it answered is cached so later
+ * requests authenticate up front instead of waiting for a 401.
+ */
+public class OnvifClient {
+
+    private static final String TAG = "OnvifClient";
+    private static final long TIMEOUT_SECONDS = 10;
+    private static final int MAX_IDLE_CONNECTIONS = 8;
+    private static final long KEEP_ALIVE_MINUTES = 5;
+    private static final MediaType SOAP_MEDIA_TYPE = MediaType.parse("application/soap+xml; charset=utf-8;");
+
+    private static OnvifClient instance;
+
+    /**
+     * Callback for plain HTTP downloads from a camera, called on an OkHttp thread
+     */
+    public interface DownloadListener {
+        /**
+         * Called with the downloaded content
+         * @param data Response body
+         */
+        void onDownloaded(byte[] data);
+
+        /**
+         * Called when the download failed
+         * @param errorCode -1 for network errors otherwise the HTTP status
+         */
+        void onDownloadFailed(int errorCode);
+    }
+
+    private final OkHttpClient baseClient;
+    private final DigestChallengeCache challengeCache = new DigestChallengeCache();
+    private final ConcurrentHashMap<String, OkHttpClient> authenticatedClients = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for OnvifClient, creates the shared connection pool
+     */
+    private OnvifClient() {
+        baseClient = new OkHttpClient.Builder()
+                .connectionPool(new ConnectionPool(MAX_IDLE_CONNECTIONS, KEEP_ALIVE_MINUTES, TimeUnit.MINUTES))
+                .connectTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .writeTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .readTimeout(TIMEOUT_SECONDS, TimeUnit.SECONDS)
+                .build();
+    }
+
+    /**
+     * Get the application-wide ONVIF client
+     * @return OnvifClient instance
+     */
+    public static synchronized OnvifClient getInstance() {
+        if (instance == null) {
+            instance = new OnvifClient();
+        }
+        return instance;
+    }
+
+    /**
+     * Requests the device information of a camera
+     * @param onvifDevice Camera to query
+     * @param listener Listener for the parsed device information
+     * @param responseListener Listener for errors
+     * @return Call of the request, can be cancelled to give up on the answer
+     */
+    public Call getDeviceInformation(OnvifDevice onvifDevice, OnvifDeviceInformationListener listener,
+                                     OnvifResponseListener responseListener) {
+        return sendOnvifRequest(onvifDevice, new GetDeviceInformationRequest(listener), responseListener);
+    }
+
+    /**
+     * Requests the media profiles of a camera
+     * @param onvifDevice Camera to query
+     * @param listener Listener for the parsed media profiles
+     * @param responseListener Listener for errors
+     */
+    public void getMediaProfiles(OnvifDevice onvifDevice, OnvifMediaProfilesListener listener,
+                                 OnvifResponseListener responseListener) {
+        sendOnvifRequest(onvifDevice, new GetMediaProfilesRequest(listener), responseListener);
+    }
+
+    /**
+     * Requests the stream URI of a media profile
+     * @param onvifDevice Camera to query
+     * @param mediaProfile Media profile to get the stream URI of
+     * @param listener Listener for the stream URI
+     * @param responseListener Listener for errors
+     */
+    public void getMediaStreamURI(OnvifDevice onvifDevice, OnvifMediaProfile mediaProfile,
+                                  OnvifMediaStreamURIListener listener, OnvifResponseListener responseListener) {
+        sendOnvifRequest(onvifDevice, new GetMediaStreamRequest(mediaProfile, listener), responseListener);
+    }
+
+    /**
+     * Sends a request to a camera. Responses to the built-in requests are parsed and handed to the
+     * listener of the request, responses to custom requests go to onResponse of the response
+     * listener. Both are called on an OkHttp thread
+     * @param onvifDevice Camera to send the request to
+     * @param request Request to send
+     * @param responseListener Listener for custom responses and errors
+     * @return Call of the request, cancelling it reports a network error to the response listener
+     */
+    public Call sendOnvifRequest(OnvifDevice onvifDevice, OnvifRequest request, OnvifResponseListener responseListener) {
+        String soapBody = OnvifXMLBuilder.getSoapHeader() + request.getXml() + OnvifXMLBuilder.getEnvelopeEnd();
+        Request httpRequest = new Request.Builder()
+                .url(onvifDevice.getHostName() + getPathForRequest(onvifDevice, request))
+                .addHeader("Content-Type", "text/xml; charset=utf-8")
+                .post(RequestBody.create(SOAP_MEDIA_TYPE, soapBody))
+                .build();
+
+        Call httpCall = getClient(onvifDevice).newCall(httpRequest);
+        httpCall.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                responseListener.onError(onvifDevice, -1, e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                try (ResponseBody body = response.body()) {
+                    String xml = (body != null) ? body.string() : "";
+                    if (response.code() != 200) {
+                        responseListener.onError(onvifDevice, response.code(), xml);
+                        return;
+                    }
+                    OnvifResponse onvifResponse = new OnvifResponse(request);
+                    onvifResponse.setSuccess(true);
+                    onvifResponse.setXml(xml);
+                    dispatchResponse(onvifDevice, onvifResponse, responseListener);
+                }
+            }
+        });
+        return httpCall;
+    }
+
+    /**
+     * Downloads a resource from a camera, such as a snapshot, with the credentials and the
+     * connections of the camera's SOAP requests
+     * @param onvifDevice Camera the resource belongs to
+     * @param url Absolute URL of the resource
+     * @param listener Listener for the content
+     */
+    public void download(OnvifDevice onvifDevice, String url, DownloadListener listener) {
+        Request httpRequest;
+        try {
+            httpRequest = new Request.Builder().url(url).get().build();
+        } catch (IllegalArgumentException e) {
+            Log.d(TAG, "Invalid download URL: " + url);
+            listener.onDownloadFailed(-1);
+            return;
+        }
+
+        getClient(onvifDevice).newCall(httpRequest).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                listener.onDownloadFailed(-1);
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) throws IOException {
+                try (ResponseBody body = response.body()) {
+                    if (response.code() != 200 || body == null) {
+                        listener.onDownloadFailed(response.code());
+                        return;
+                    }
+                    listener.onDownloaded(body.bytes());
+                }
+            }
+        });
+    }
+
+    /**
+     * Parses a response and hands it to the matching listener
+     * @param onvifDevice Camera the response came from
+     * @param onvifResponse Response to dispatch
+     * @param responseListener Listener for custom responses
+     */
+    private void dispatchResponse(OnvifDevice onvifDevice, OnvifResponse onvifResponse, OnvifResponseListener responseListener) {
+        OnvifRequest request = onvifResponse.request();
+        switch (request.getType()) {
+            case GET_DEVICE_INFORMATION:
+                ((GetDeviceInformationRequest) request).getListener().onDeviceInformationReceived(onvifDevice,
+                        new GetDeviceInformationParser().parse(onvifResponse));
+                break;
+            case GET_MEDIA_PROFILES:
+                ((GetMediaProfilesRequest) request).getListener().onMediaProfilesReceived(onvifDevice,
+                        new GetMediaProfilesParser().parse(onvifResponse));
+                break;
+            case GET_STREAM_URI:
+                GetMediaStreamRequest streamRequest = (GetMediaStreamRequest) request;
+                streamRequest.getListener().onMediaStreamURIReceived(onvifDevice, streamRequest.getMediaProfile(),
+                        new GetMediaStreamParser().parse(onvifResponse));
+                break;
+            default:
+                responseListener.onResponse(onvifDevice, onvifResponse);
+                break;
+        }
+    }
+
+    /**
+     * Get the service path a request is posted to
+     * @param onvifDevice Camera the request is sent to
+     * @param request Request being sent
+     * @return Path of the service
+     */
+    private String getPathForRequest(OnvifDevice onvifDevice, OnvifRequest request) {
+        OnvifServices services = onvifDevice.getPath();
+        switch (request.getType()) {
+            case GET_DEVICE_INFORMATION:
+                return services.getDeviceInformationPath();
+            case GET_MEDIA_PROFILES:
+                return services.getProfilesPath();
+            case GET_STREAM_URI:
+                return services.getStreamURIPath();
+            default:
+                return services.getServicesPath();
+        }
+    }
+
+    /**
+     * Get the client for a camera and its credentials. Clients are derived from the base client so
+     * they share its connection pool and dispatcher
+     * @param onvifDevice Camera a request is sent to
+     * @return Client authenticating with the credentials of the camera
+     */
+    private OkHttpClient getClient(OnvifDevice onvifDevice) {
+        String username = onvifDevice.getUsername();
+        String password = onvifDevice.getPassword();
+        if (username == null || password == null) {
+            return baseClient;
+        }
+
+        String key = onvifDevice.getHostName() + "|" + username + ":" + password;
+        OkHttpClient client = authenticatedClients.get(key);
+        if (client == null) {
+            Log.d(TAG, "Creating authenticated client");
+            DigestAuthenticator authenticator = new DigestAuthenticator(new Credentials(username, password));
+            client = baseClient.newBuilder()
+                    .authenticator(challengeCache.cachingAuthenticator(authenticator, username))
+                    .addInterceptor(challengeCache.preemptiveInterceptor(authenticator, username))
+                    .build();
+            OkHttpClient existing = authenticatedClients.putIfAbsent(key, client);
+            if (existing != null) {
+                client = existing;
+            }
+        }
+        return client;
+    }
+}
@@ -0,0 +1,153 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.onvif;
+
+import android.util.Log;
+
+import com.vuzix.securityviewer.model.MediaProfileDetails;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+import org.xmlpull.v1.XmlPullParserFactory;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Parser for GetProfiles responses that keeps the video encoder configuration of each profile
+ */
+public class ProfileDetailsParser {
+
+    private static final String TAG = "ProfileDetailsParser";
+
+    private static final String KEY_PROFILES = "Profiles";
+    private static final String KEY_NAME = "Name";
+    private static final String KEY_VIDEO_ENCODER = "VideoEncoderConfiguration";
+    private static final String KEY_ENCODING = "Encoding";
+    private static final String KEY_RESOLUTION = "Resolution";
+    private static final String KEY_WIDTH = "Width";
+    private static final String KEY_HEIGHT = "Height";
+    private static final String KEY_RATE_CONTROL = "RateControl";
+    private static final String KEY_BITRATE_LIMIT = "BitrateLimit";
+    private static final String KEY_FRAME_RATE_LIMIT = "FrameRateLimit";
+    private static final String ATTR_TOKEN = "token";
+
+    /**
+     * Parse a GetProfiles response
+     * @param xml Raw SOAP response from the camera
+     * @return List of profiles in the order the camera returned them, empty if nothing could be read
+     */
+    public List<MediaProfileDetails> parse(String xml) {
+        List<MediaProfileDetails> profiles = new ArrayList<>();
+        if (xml == null) {
+            return profiles;
+        }
+
+        try {
+            XmlPullParserFactory factory = XmlPullParserFactory.newInstance();
+            factory.setNamespaceAware(true);
+            XmlPullParser xpp = factory.newPullParser();
+            xpp.setInput(new StringReader(xml));
+
+            Deque<String> path = new ArrayDeque<>();
+            MediaProfileDetails profile = null;
+            String profileToken = null;
+            int width = 0;
+            int height = 0;
+
+            int eventType = xpp.getEventType();
+            while (eventType != XmlPullParser.END_DOCUMENT) {
+                if (eventType == XmlPullParser.START_TAG) {
+                    String parent = path.peek();
+                    String name = xpp.getName();
+                    path.push(name);
+
+                    if (KEY_PROFILES.equals(name)) {
+                        profileToken = xpp.getAttributeValue(null, ATTR_TOKEN);
+                        profile = null;
+                        width = 0;
+                        height = 0;
+                    } else if (KEY_NAME.equals(name) && KEY_PROFILES.equals(parent)) {
+                        profile = new MediaProfileDetails(xpp.nextText(), profileToken);
+                        path.pop();
+                    } else if (profile != null && path.contains(KEY_VIDEO_ENCODER)) {
+                        if (KEY_ENCODING.equals(name) && KEY_VIDEO_ENCODER.equals(parent)) {
+                            profile.setEncoding(xpp.nextText());
+                            path.pop();
+                        } else if (KEY_WIDTH.equals(name) && KEY_RESOLUTION.equals(parent)) {
+                            width = parseInt(xpp.nextText());
+                            path.pop();
+                        } else if (KEY_HEIGHT.equals(name) && KEY_RESOLUTION.equals(parent)) {
+                            height = parseInt(xpp.nextText());
+                            path.pop();
+                        } else if (KEY_BITRATE_LIMIT.equals(name) && KEY_RATE_CONTROL.equals(parent)) {
+                            profile.setBitrateLimit(parseInt(xpp.nextText()));
+                            path.pop();
+                        } else if (KEY_FRAME_RATE_LIMIT.equals(name) && KEY_RATE_CONTROL.equals(parent)) {
+                            profile.setFrameRateLimit(parseInt(xpp.nextText()));
+                            path.pop();
+                        }
+                    }
+                } else if (eventType == XmlPullParser.END_TAG) {
+                    String name = path.pop();
+                    if (KEY_PROFILES.equals(name) && profile != null) {
+                        profile.setResolution(width, height);
+                        profiles.add(profile);
+                        profile = null;
+                    }
+                }
+                eventType = xpp.next();
+            }
+        } catch (XmlPullParserException | IOException e) {
+            Log.e(TAG, "Could not parse profiles: " + e.getMessage());
+        }
+
+        return profiles;
+    }
+
+    /**
+     * Parse an integer value from the response, ignoring malformed values
+     * @param value Text content of an element
+     * @return Parsed value, 0 if it is not a number
+     */
+    private int parseInt(String value) {
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
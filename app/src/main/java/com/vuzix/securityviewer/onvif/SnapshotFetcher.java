@@ -0,0 +1,205 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.onvif;
+
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.Log;
+
+import com.vuzix.securityviewer.model.MediaProfileDetails;
+import com.vuzix.securityviewer.utils.MediaProfileSelector;
+
+import java.util.List;
+
+import be.teletask.onvif.listeners.OnvifResponseListener;
+import be.teletask.onvif.models.OnvifDevice;
+import be.teletask.onvif.responses.OnvifResponse;
+
+/**
+ * Fetches JPEG snapshots of a single camera. The snapshot URI of the profile picked by
+ * MediaProfileSelector is looked up once and reused, later fetches are a single HTTP GET on the
+ * camera's kept-alive connection. Snapshots are decoded downsampled to the size they are shown at.
+ */
+public class SnapshotFetcher implements OnvifResponseListener {
+
+    private static final String TAG = "SnapshotFetcher";
+
+    /**
+     * Callback for the outcome of a fetch, called on an ONVIF network thread
+     */
+    public interface SnapshotListener {
+        /**
+         * Called with the decoded snapshot
+         * @param snapshot Snapshot, downsampled to about the target size
+         */
+        void onSnapshot(Bitmap snapshot);
+
+        /**
+         * Called when no snapshot could be fetched
+         * @param errorCode ONVIF error code, -1 for network errors otherwise the HTTP status
+         */
+        void onSnapshotFailed(int errorCode);
+    }
+
+    private final OnvifDevice onvifDevice;
+    private final String profileToken;
+    private final MediaProfileSelector profileSelector;
+    private final int targetWidth;
+    private final int targetHeight;
+    private final OnvifClient onvifClient = OnvifClient.getInstance();
+    private volatile String snapshotUri;
+    private SnapshotListener listener;
+
+    /**
+     * Constructor for SnapshotFetcher
+     * @param hostName Host name of the camera
+     * @param username Username of the camera, may be null
+     * @param password Password of the camera, may be null
+     * @param profileToken Media profile to take snapshots of, null to pick automatically
+     * @param profileSelector Selector used to pick a media profile
+     * @param targetWidth Width in pixels the snapshot will be shown at
+     * @param targetHeight Height in pixels the snapshot will be shown at
+     */
+    public SnapshotFetcher(String hostName, String username, String password, String profileToken,
+                           MediaProfileSelector profileSelector, int targetWidth, int targetHeight) {
+        this.onvifDevice = new OnvifDevice(hostName, username, password);
+        this.profileToken = profileToken;
+        this.profileSelector = profileSelector;
+        this.targetWidth = targetWidth;
+        this.targetHeight = targetHeight;
+    }
+
+    /**
+     * Fetches a snapshot, the listener is called once with the outcome. Only one fetch should be
+     * in flight at a time
+     * @param listener Listener for the outcome
+     */
+    public void fetch(SnapshotListener listener) {
+        this.listener = listener;
+        if (snapshotUri != null) {
+            download();
+        } else {
+            Log.d(TAG, "Requesting media profiles from " + onvifDevice.getHostName());
+            onvifClient.sendOnvifRequest(onvifDevice, new GetProfileDetailsRequest(), this);
+        }
+    }
+
+    /**
+     * ONVIF listener method trigger on response received, used for the detailed media profiles and
+     * the snapshot URI of the selected profile
+     * @param onvifDevice OnvifDevice related to the response
+     * @param onvifResponse OnvifResponse object containing response data
+     */
+    @Override
+    public void onResponse(OnvifDevice onvifDevice, OnvifResponse onvifResponse) {
+        if (onvifResponse.request() instanceof GetProfileDetailsRequest) {
+            List<MediaProfileDetails> profiles = new ProfileDetailsParser().parse(onvifResponse.getXml());
+            MediaProfileDetails profile = profileSelector.select(profiles, profileToken);
+            if (profile == null) {
+                listener.onSnapshotFailed(-1);
+                return;
+            }
+            onvifClient.sendOnvifRequest(onvifDevice, new GetSnapshotUriRequest(profile.getToken()), this);
+        } else if (onvifResponse.request() instanceof GetSnapshotUriRequest) {
+            snapshotUri = new SnapshotUriParser().parse(onvifResponse.getXml());
+            if (snapshotUri == null) {
+                Log.d(TAG, onvifDevice.getHostName() + " has no snapshot URI");
+                listener.onSnapshotFailed(-1);
+                return;
+            }
+            download();
+        }
+    }
+
+    /**
+     * ONVIF listener method triggered when error received
+     * @param onvifDevice OnvifDevice related to the error
+     * @param errorCode Error code
+     * @param errorMessage Error message relating to the error code
+     */
+    @Override
+    public void onError(OnvifDevice onvifDevice, int errorCode, String errorMessage) {
+        Log.d(TAG, "Could not get snapshot URI of " + onvifDevice.getHostName() + ": " + errorMessage);
+        listener.onSnapshotFailed(errorCode);
+    }
+
+    /**
+     * Downloads and decodes a snapshot from the known snapshot URI. The URI is dropped when the
+     * download fails so the next fetch asks the camera again
+     */
+    private void download() {
+        onvifClient.download(onvifDevice, snapshotUri, new OnvifClient.DownloadListener() {
+            @Override
+            public void onDownloaded(byte[] data) {
+                Bitmap snapshot = decodeSampledBitmap(data, targetWidth, targetHeight);
+                if (snapshot == null) {
+                    listener.onSnapshotFailed(-1);
+                } else {
+                    listener.onSnapshot(snapshot);
+                }
+            }
+
+            @Override
+            public void onDownloadFailed(int errorCode) {
+                Log.d(TAG, "Snapshot download from " + onvifDevice.getHostName() + " failed: " + errorCode);
+                snapshotUri = null;
+                listener.onSnapshotFailed(errorCode);
+            }
+        });
+    }
+
+    /**
+     * Decodes a JPEG downsampled by the largest power of two that keeps it at least the target size
+     * @param data Encoded image
+     * @param targetWidth Width in pixels the image will be shown at
+     * @param targetHeight Height in pixels the image will be shown at
+     * @return Decoded image, null if the data is not an image
+     */
+    public static Bitmap decodeSampledBitmap(byte[] data, int targetWidth, int targetHeight) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeByteArray(data, 0, data.length, options);
+        if (options.outWidth <= 0 || options.outHeight <= 0) {
+            return null;
+        }
+
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= targetWidth
+                && options.outHeight / (sampleSize * 2) >= targetHeight) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        options.inPreferredConfig = Bitmap.Config.RGB_565;
+        return BitmapFactory.decodeByteArray(data, 0, data.length, options);
+    }
+}
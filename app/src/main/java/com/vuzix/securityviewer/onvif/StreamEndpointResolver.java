@@ -0,0 +1,223 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.onvif;
+
+import android.database.sqlite.SQLiteConstraintException;
+import android.util.Log;
+
+import com.vuzix.securityviewer.CamerasDatabase;
+import com.vuzix.securityviewer.model.MediaProfileDetails;
+import com.vuzix.securityviewer.model.StreamCache;
+import com.vuzix.securityviewer.utils.MediaProfileSelector;
+import com.vuzix.securityviewer.utils.StartupTrace;
+
+import java.util.List;
+
+import be.teletask.onvif.listeners.OnvifMediaProfilesListener;
+import be.teletask.onvif.listeners.OnvifMediaStreamURIListener;
+import be.teletask.onvif.listeners.OnvifResponseListener;
+import be.teletask.onvif.models.OnvifDevice;
+import be.teletask.onvif.models.OnvifMediaProfile;
+import be.teletask.onvif.responses.OnvifResponse;
+
+/**
+ * Resolves the stream URI of a single camera: asks for the detailed media profiles, picks one with
+ * MediaProfileSelector, asks for its stream URI and stores the result in the stream cache. Used by
+ * StreamActivity when a stream opens and by StreamPrefetcher ahead of time.
+ */
+public class StreamEndpointResolver implements OnvifResponseListener, OnvifMediaProfilesListener, OnvifMediaStreamURIListener {
+
+    private static final String TAG = "StreamEndpointResolver";
+
+    /**
+     * Callback for the outcome of a resolve, called on an ONVIF network thread
+     */
+    public interface StreamEndpointListener {
+        /**
+         * Called once the stream URI was received and cached
+         * @param streamUri Stream URI returned by the camera
+         */
+        void onStreamEndpointResolved(String streamUri);
+
+        /**
+         * Called when the camera could not be asked for its stream URI
+         * @param errorCode ONVIF error code, -1 for network errors otherwise the HTTP status
+         */
+        void onStreamEndpointFailed(int errorCode);
+    }
+
+    private final CamerasDatabase database;
+    private final int cameraUID;
+    private final OnvifDevice onvifDevice;
+    private final String profileToken;
+    private final MediaProfileSelector profileSelector;
+    private final OnvifClient onvifClient = OnvifClient.getInstance();
+    private StreamEndpointListener listener;
+    private StartupTrace startupTrace;
+    private volatile String encoding;
+
+    /**
+     * Constructor for StreamEndpointResolver
+     * @param database Database holding the stream cache
+     * @param cameraUID UID of the camera, -1 if the camera is not stored and should not be cached
+     * @param hostName Host name of the camera
+     * @param username Username of the camera, may be null
+     * @param password Password of the camera, may be null
+     * @param profileToken Media profile pinned by the user, null to pick automatically
+     * @param profileSelector Selector used to pick a media profile
+     */
+    public StreamEndpointResolver(CamerasDatabase database, int cameraUID, String hostName, String username,
+                                  String password, String profileToken, MediaProfileSelector profileSelector) {
+        this.database = database;
+        this.cameraUID = cameraUID;
+        this.onvifDevice = new OnvifDevice(hostName, username, password);
+        this.profileToken = profileToken;
+        this.profileSelector = profileSelector;
+    }
+
+    /**
+     * Set the trace to mark when profiles and the stream URI are received
+     * @param startupTrace Trace of the stream being opened, null when prefetching
+     */
+    public void setStartupTrace(StartupTrace startupTrace) {
+        this.startupTrace = startupTrace;
+    }
+
+    /**
+     * Get the video encoding of the selected profile, valid once the stream URI was resolved
+     * @return Encoding as reported by the camera, null if unknown
+     */
+    public String getEncoding() {
+        return encoding;
+    }
+
+    /**
+     * Starts resolving the stream URI, the listener is called once with the outcome
+     * @param listener Listener for the outcome
+     */
+    public void resolve(StreamEndpointListener listener) {
+        this.listener = listener;
+        Log.d(TAG, "Requesting media profiles from " + onvifDevice.getHostName());
+        onvifClient.sendOnvifRequest(onvifDevice, new GetProfileDetailsRequest(), this);
+    }
+
+    /**
+     * ONVIF listener method trigger on response received, used for the detailed media profiles.
+     * Picks the profile that best fits the display and requests its stream URI
+     * @param onvifDevice OnvifDevice related to the response
+     * @param onvifResponse OnvifResponse object containing response data
+     */
+    @Override
+    public void onResponse(OnvifDevice onvifDevice, OnvifResponse onvifResponse) {
+        if (!(onvifResponse.request() instanceof GetProfileDetailsRequest)) {
+            return;
+        }
+
+        markStage(StartupTrace.Stage.PROFILES_RECEIVED);
+        List<MediaProfileDetails> profiles = new ProfileDetailsParser().parse(onvifResponse.getXml());
+        MediaProfileDetails profile = profileSelector.select(profiles, profileToken);
+        if (profile == null) {
+            Log.d(TAG, "Detailed media profiles unavailable, using first profile");
+            onvifClient.getMediaProfiles(onvifDevice, this, this);
+            return;
+        }
+
+        Log.d(TAG, "Selected media profile " + profile.getName() + " " + profile.getWidth()
+                + "x" + profile.getHeight() + " " + profile.getEncoding());
+        encoding = profile.getEncoding();
+        onvifClient.getMediaStreamURI(onvifDevice, profile.toOnvifMediaProfile(), this, this);
+    }
+
+    /**
+     * ONVIF listener method called when media profiles are received, only used when the detailed
+     * profiles could not be read
+     * @param onvifDevice OnvifDevice relating to the media profiles
+     * @param list List of OnvifMediaProfile objects
+     */
+    @Override
+    public void onMediaProfilesReceived(OnvifDevice onvifDevice, List<OnvifMediaProfile> list) {
+        Log.d(TAG, "Media profiles received");
+        markStage(StartupTrace.Stage.PROFILES_RECEIVED);
+        if (list.isEmpty()) {
+            listener.onStreamEndpointFailed(-1);
+            return;
+        }
+        onvifClient.getMediaStreamURI(onvifDevice, list.get(0), this, this);
+    }
+
+    /**
+     * ONVIF listener method called when stream URI is received, stores it for the next open
+     * @param onvifDevice OnvifDevice related to the stream URI
+     * @param onvifMediaProfile OnvifMediaProfile related to the OnvifDevice
+     * @param uriPath URI path for the OnvifDevice
+     */
+    @Override
+    public void onMediaStreamURIReceived(OnvifDevice onvifDevice, OnvifMediaProfile onvifMediaProfile, String uriPath) {
+        Log.d(TAG, "Media stream URI received from " + onvifDevice.getHostName());
+        markStage(StartupTrace.Stage.STREAM_URI_RECEIVED);
+        if (cameraUID != -1) {
+            try {
+                StreamCache streamCache = new StreamCache();
+                streamCache.setCameraUID(cameraUID);
+                database.getStreamCacheDAO().add(streamCache);
+                database.getStreamCacheDAO().updateStreamUri(cameraUID, onvifMediaProfile.getToken(),
+                        uriPath, encoding, System.currentTimeMillis());
+            } catch (SQLiteConstraintException e) {
+                // Camera was removed while its stream was being resolved
+                Log.d(TAG, "Camera " + cameraUID + " no longer exists, not caching stream URI");
+            }
+        }
+        listener.onStreamEndpointResolved(uriPath);
+    }
+
+    /**
+     * ONVIF listener method triggered when error received
+     * @param onvifDevice OnvifDevice related to the error
+     * @param errorCode Error code
+     * @param errorMessage Error message relating to the error code
+     */
+    @Override
+    public void onError(OnvifDevice onvifDevice, int errorCode, String errorMessage) {
+        Log.d(TAG, "Could not resolve stream of " + onvifDevice.getHostName() + ": " + errorMessage);
+        listener.onStreamEndpointFailed(errorCode);
+    }
+
+    /**
+     * Marks a stage on the startup trace if there is one
+     * @param stage Stage reached
+     */
+    private void markStage(StartupTrace.Stage stage) {
+        if (startupTrace != null) {
+            startupTrace.mark(stage);
+        }
+    }
+}
@@ -0,0 +1,179 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.onvif;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.vuzix.securityviewer.utils.AppExecutors;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import be.teletask.onvif.DiscoveryMode;
+import be.teletask.onvif.models.Device;
+import be.teletask.onvif.models.DiscoveryPacket;
+import be.teletask.onvif.parsers.DiscoveryParser;
+import be.teletask.onvif.responses.OnvifResponse;
+
+/**
+ * WS-Discovery that reports every camera as soon as its ProbeMatch arrives. DiscoveryManager
+ * collects all responses until its timeout and delivers them in one batch at the end. The search
+ * ends once nothing new arrived for a quiet period that adapts to how spread out the responses
+ * were, and never later than the maximum duration. Responses are parsed with the library's
+ * DiscoveryParser. Unlike DiscoveryManager, which reverse resolves every responder, devices are
+ * named by their IP address, CameraRegistry resolves subscribed host names to match them
+ */
+public class StreamingDiscovery {
+
+    private static final String TAG = "StreamingDiscovery";
+    private static final String MULTICAST_ADDRESS = "239.255.255.250";
+    private static final int PROBE_REPEATS = 2;
+    private static final int MAX_PACKET_SIZE = 4096;
+    private static final long MIN_QUIET_PERIOD = 1500;
+    private static final long NO_RESPONSE_QUIET_PERIOD = 4000;
+    private static final int QUIET_PERIOD_FACTOR = 3;
+
+    /**
+     * Callback for discovery progress, called on the discovery thread
+     */
+    public interface DeviceListener {
+        /**
+         * Called once the probe was sent
+         */
+        void onDiscoveryStarted();
+
+        /**
+         * Called for every device that answered, each host is reported once
+         * @param device Device that answered
+         */
+        void onDeviceFound(Device device);
+
+        /**
+         * Called when the search ended
+         * @param deviceCount Number of devices reported
+         */
+        void onDiscoveryFinished(int deviceCount);
+    }
+
+    private final long maxDuration;
+    private volatile boolean cancelled;
+
+    /**
+     * Constructor for StreamingDiscovery
+     * @param maxDuration Longest time a search may take in ms
+     */
+    public StreamingDiscovery(long maxDuration) {
+        this.maxDuration = maxDuration;
+    }
+
+    /**
+     * Starts a search on the BACKGROUND lane
+     * @param listener Listener for found devices
+     */
+    public void discover(DeviceListener listener) {
+        cancelled = false;
+        AppExecutors.getInstance().submit(AppExecutors.Lane.BACKGROUND, () -> runDiscovery(listener));
+    }
+
+    /**
+     * Ends a running search at the next received packet or quiet period check
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Sends the probe and reads responses until the search is over
+     * @param listener Listener for found devices
+     */
+    private void runDiscovery(DeviceListener listener) {
+        Set<String> foundHosts = new HashSet<>();
+        try (DatagramSocket socket = new DatagramSocket()) {
+            byte[] probe = new DiscoveryPacket(UUID.randomUUID().toString(), DiscoveryMode.ONVIF).getData();
+            DatagramPacket probePacket = new DatagramPacket(probe, probe.length,
+                    InetAddress.getByName(MULTICAST_ADDRESS), DiscoveryMode.ONVIF.port);
+            // SOAP-over-UDP repeats multicast messages, devices drop the duplicates by message ID
+            for (int i = 0; i < PROBE_REPEATS; i++) {
+                socket.send(probePacket);
+            }
+            listener.onDiscoveryStarted();
+
+            long startTime = SystemClock.elapsedRealtime();
+            long lastResponseTime = startTime;
+            long longestGap = 0;
+            DiscoveryParser parser = new DiscoveryParser(DiscoveryMode.ONVIF);
+            byte[] buffer = new byte[MAX_PACKET_SIZE];
+            while (!cancelled) {
+                long now = SystemClock.elapsedRealtime();
+                long quietPeriod = foundHosts.isEmpty() ? NO_RESPONSE_QUIET_PERIOD
+                        : Math.max(MIN_QUIET_PERIOD, QUIET_PERIOD_FACTOR * longestGap);
+                long waitTime = Math.min(lastResponseTime + quietPeriod, startTime + maxDuration) - now;
+                if (waitTime <= 0) {
+                    break;
+                }
+                socket.setSoTimeout((int) waitTime);
+                DatagramPacket response = new DatagramPacket(buffer, buffer.length);
+                try {
+                    socket.receive(response);
+                } catch (SocketTimeoutException e) {
+                    break;
+                }
+
+                // Parse with the host address, a reverse lookup per response would stall the search
+                parser.setHostName(response.getAddress().getHostAddress());
+                List<Device> devices = parser.parse(new OnvifResponse(
+                        new String(response.getData(), 0, response.getLength(), StandardCharsets.UTF_8)));
+                for (Device device : devices) {
+                    if (foundHosts.add(device.getHostName())) {
+                        now = SystemClock.elapsedRealtime();
+                        longestGap = Math.max(longestGap, now - lastResponseTime);
+                        lastResponseTime = now;
+                        listener.onDeviceFound(device);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Discovery failed: " + e.getMessage());
+        }
+        Log.d(TAG, "Discovery finished, found: " + foundHosts.size());
+        listener.onDiscoveryFinished(foundHosts.size());
+    }
+}
@@ -0,0 +1,291 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.onvif;
+
+import android.net.DhcpInfo;
+import android.net.wifi.WifiManager;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.vuzix.securityviewer.utils.AppExecutors;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+
+import be.teletask.onvif.models.OnvifDevice;
+
+/**
+ * Unicast discovery for networks that drop WS-Discovery multicast. The subnet of the current Wi-Fi
+ * connection is swept with non-blocking TCP connects to the common ONVIF ports, all driven by one
+ * selector so a /24 takes a few seconds while never more than maxSockets sockets are open. Every
+ * open port is reported as its own candidate that still has to be confirmed with
+ * GetDeviceInformation, a camera with its web interface on port 80 may serve ONVIF on another one
+ */
+public class SubnetSweep {
+
+    private static final String TAG = "SubnetSweep";
+    private static final int[] ONVIF_PORTS = {80, 8080, 8000, 8899};
+    private static final int DEFAULT_HTTP_PORT = 80;
+    private static final int MIN_PREFIX_LENGTH = 24;
+    private static final long SELECT_TIMEOUT = 50;
+
+    /**
+     * Callback for sweep progress, called on the sweep thread
+     */
+    public interface SweepListener {
+        /**
+         * Called for every open ONVIF port, a host with several open ports is reported once per port
+         * @param onvifDevice Candidate device at the open port
+         */
+        void onCandidateFound(OnvifDevice onvifDevice);
+
+        /**
+         * Called when the sweep ended
+         * @param candidateCount Number of open ports reported
+         */
+        void onSweepFinished(int candidateCount);
+    }
+
+    private final int maxSockets;
+    private final long connectTimeout;
+    private volatile boolean cancelled;
+
+    /**
+     * Constructor for SubnetSweep
+     * @param maxSockets Most connection attempts open at once
+     * @param connectTimeout Time a host gets to accept a connection in ms
+     */
+    public SubnetSweep(int maxSockets, long connectTimeout) {
+        this.maxSockets = maxSockets;
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * Starts sweeping the subnet of the current Wi-Fi connection on the BACKGROUND lane. Subnets
+     * larger than a /24 are narrowed to the /24 around our own address
+     * @param wifiManager Used to read our address and netmask
+     * @param listener Listener for candidates
+     * @return False if there is no Wi-Fi address to derive the subnet from
+     */
+    public boolean sweep(WifiManager wifiManager, SweepListener listener) {
+        DhcpInfo dhcpInfo = wifiManager.getDhcpInfo();
+        int ipAddress = wifiManager.getConnectionInfo().getIpAddress();
+        if (ipAddress == 0) {
+            return false;
+        }
+        // WifiManager reports addresses in little-endian order
+        int address = Integer.reverseBytes(ipAddress);
+        int prefixLength = (dhcpInfo != null && dhcpInfo.netmask != 0)
+                ? Integer.bitCount(dhcpInfo.netmask) : MIN_PREFIX_LENGTH;
+        prefixLength = Math.max(prefixLength, MIN_PREFIX_LENGTH);
+        int mask = prefixLength == 32 ? -1 : ~((1 << (32 - prefixLength)) - 1);
+        int network = address & mask;
+        int hostCount = ~mask;
+
+        cancelled = false;
+        AppExecutors.getInstance().submit(AppExecutors.Lane.BACKGROUND,
+                () -> runSweep(network, hostCount, address, listener));
+        return true;
+    }
+
+    /**
+     * Ends a running sweep at the next selector wakeup
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    /**
+     * Connects to every host and port of the subnet, at most maxSockets at a time
+     * @param network Network address
+     * @param hostCount Number of host addresses after the network address, including broadcast
+     * @param ownAddress Our own address, skipped
+     * @param listener Listener for candidates
+     */
+    private void runSweep(int network, int hostCount, int ownAddress, SweepListener listener) {
+        long startTime = SystemClock.elapsedRealtime();
+        // Port-major order so cameras on the default port show up first
+        ArrayDeque<InetSocketAddress> targets = new ArrayDeque<>();
+        for (int port : ONVIF_PORTS) {
+            for (int host = 1; host < hostCount; host++) {
+                int address = network + host;
+                if (address != ownAddress) {
+                    targets.add(new InetSocketAddress(toInetAddress(address), port));
+                }
+            }
+        }
+
+        Set<InetSocketAddress> foundTargets = new HashSet<>();
+        try (Selector selector = Selector.open()) {
+            while (!cancelled && (!targets.isEmpty() || !selector.keys().isEmpty())) {
+                while (selector.keys().size() < maxSockets && !targets.isEmpty()) {
+                    startConnect(selector, targets.poll(), foundTargets, listener);
+                }
+
+                selector.select(SELECT_TIMEOUT);
+                Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                while (selectedKeys.hasNext()) {
+                    SelectionKey key = selectedKeys.next();
+                    selectedKeys.remove();
+                    InetSocketAddress target = ((Probe) key.attachment()).target;
+                    try {
+                        if (((SocketChannel) key.channel()).finishConnect()) {
+                            onPortOpen(target, foundTargets, listener);
+                        }
+                    } catch (IOException e) {
+                        // Refused or unreachable, nothing listens there
+                    }
+                    closeProbe(key);
+                }
+
+                long now = SystemClock.elapsedRealtime();
+                for (SelectionKey key : new HashSet<>(selector.keys())) {
+                    if (key.isValid() && now >= ((Probe) key.attachment()).deadline) {
+                        closeProbe(key);
+                    }
+                }
+                // Cancelled keys leave the key set on the next select
+                selector.selectNow();
+            }
+            for (SelectionKey key : selector.keys()) {
+                closeProbe(key);
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Sweep failed: " + e.getMessage());
+        }
+        Log.d(TAG, "Sweep finished in " + (SystemClock.elapsedRealtime() - startTime) + " ms, found: "
+                + foundTargets.size());
+        listener.onSweepFinished(foundTargets.size());
+    }
+
+    /**
+     * Opens a non-blocking connection attempt to a target
+     * @param selector Selector driving the attempts
+     * @param target Host and port to connect to
+     * @param foundTargets Open ports already reported
+     * @param listener Listener for candidates
+     */
+    private void startConnect(Selector selector, InetSocketAddress target, Set<InetSocketAddress> foundTargets,
+                              SweepListener listener) {
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            if (channel.connect(target)) {
+                onPortOpen(target, foundTargets, listener);
+                channel.close();
+                return;
+            }
+            channel.register(selector, SelectionKey.OP_CONNECT,
+                    new Probe(target, SystemClock.elapsedRealtime() + connectTimeout));
+        } catch (IOException e) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException closeException) {
+                    Log.d(TAG, "Could not close probe: " + closeException.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Reports a port the first time it accepts a connection
+     * @param target Host and port that accepted
+     * @param foundTargets Open ports already reported
+     * @param listener Listener for candidates
+     */
+    private void onPortOpen(InetSocketAddress target, Set<InetSocketAddress> foundTargets, SweepListener listener) {
+        if (foundTargets.add(target)) {
+            String hostName = target.getAddress().getHostAddress();
+            if (target.getPort() != DEFAULT_HTTP_PORT) {
+                hostName += ":" + target.getPort();
+            }
+            listener.onCandidateFound(new OnvifDevice(hostName));
+        }
+    }
+
+    /**
+     * Cancels a connection attempt and closes its socket
+     * @param key Key of the attempt
+     */
+    private void closeProbe(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            Log.d(TAG, "Could not close probe: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Converts an address in host order to an InetAddress without a lookup
+     * @param address IPv4 address
+     * @return InetAddress of the address
+     */
+    private static InetAddress toInetAddress(int address) {
+        byte[] bytes = {(byte) (address >>> 24), (byte) (address >>> 16), (byte) (address >>> 8), (byte) address};
+        try {
+            return InetAddress.getByAddress(bytes);
+        } catch (UnknownHostException e) {
+            // Only thrown for addresses of illegal length
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Connection attempt in flight
+     */
+    private static class Probe {
+        final InetSocketAddress target;
+        final long deadline;
+
+        /**
+         * Constructor for Probe
+         * @param target Host and port being connected to
+         * @param deadline Time the attempt is given up at
+         */
+        Probe(InetSocketAddress target, long deadline) {
+            this.target = target;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -41,22 +41,31 @@ import android.view.MenuItem;
 import android.view.View;
 import android.widget.EditText;
 
-import androidx.room.Room;
 
+import com.vuzix.securityviewer.CameraRegistry;
+import com.vuzix.securityviewer.CameraRepository;
 import com.vuzix.securityviewer.CamerasDatabase;
 import com.vuzix.securityviewer.HomeActivity;
 import com.vuzix.securityviewer.MainActivity;
 import com.vuzix.securityviewer.R;
+import com.vuzix.securityviewer.dao.DiscoveredDeviceDAO;
 import com.vuzix.securityviewer.model.Camera;
+import com.vuzix.securityviewer.model.DiscoveredDevice;
+import com.vuzix.securityviewer.onvif.DeviceInfoScheduler;
+import com.vuzix.securityviewer.onvif.OnvifClient;
+import com.vuzix.securityviewer.onvif.StreamingDiscovery;
+import com.vuzix.securityviewer.onvif.SubnetSweep;
+import com.vuzix.securityviewer.utils.AppExecutors;
+import com.vuzix.securityviewer.utils.TaskScope;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
-import be.teletask.onvif.DiscoveryManager;
-import be.teletask.onvif.OnvifManager;
-import be.teletask.onvif.listeners.DiscoveryListener;
 import be.teletask.onvif.listeners.OnvifDeviceInformationListener;
 import be.teletask.onvif.listeners.OnvifResponseListener;
 import be.teletask.onvif.models.Device;
@@ -64,14 +73,26 @@ import be.teletask.onvif.models.OnvifDevice;
 import be.teletask.onvif.models.OnvifDeviceInformation;
 import be.teletask.onvif.responses.OnvifResponse;
 
-public class DiscoverCameras extends Settings implements DiscoveryListener, OnvifResponseListener, OnvifDeviceInformationListener {
+public class DiscoverCameras extends Settings implements StreamingDiscovery.DeviceListener,
+        SubnetSweep.SweepListener, DeviceInfoScheduler.DeviceInfoListener, OnvifResponseListener,
+        OnvifDeviceInformationListener {
+
+    private static final int MAX_CONCURRENT_LOOKUPS = 4;
+    private static final long LOOKUP_DEADLINE = 4000;
+    private static final int LOOKUP_ATTEMPTS = 3;
+    private static final int MAX_SWEEP_SOCKETS = 128;
+    private static final long SWEEP_CONNECT_TIMEOUT = 500;
 
     private final int pageTitle = R.string.title_settings_discovery;
 
-    private DiscoveryManager discoveryManager;
-    private OnvifManager onvifManager;
+    private StreamingDiscovery discovery;
+    private DeviceInfoScheduler deviceInfoScheduler;
+    private SubnetSweep subnetSweep;
+    private OnvifClient onvifClient;
     private WifiManager.MulticastLock multicastLock;
-    private CamerasDatabase database;
+    private CameraRepository cameraRepository;
+    private DiscoveredDeviceDAO discoveredDeviceDAO;
+    private final TaskScope tasks = new TaskScope();
 
     private MenuItem wifiMenuItem;
     private MenuItem searchMenuItem;
@@ -82,10 +103,18 @@ public class DiscoverCameras extends Settings implements DiscoveryListener, Onvi
     private Map<String, Camera> hostnameCameraMap;
 
     private List<Camera> discoveredNetworkCameras;
-    private List<Camera> camerasFromRoom;
+    private List<DiscoveredDevice> cachedDevices;
+    private volatile CameraRegistry cameraRegistry;
+
+    private String networkName;
+    private Set<String> refreshedHosts;
+    private Set<String> seenHosts;
+    private long refreshStartedAt;
 
     private boolean from_ftue;
     boolean notSearching = true;
+    private boolean discoveryRunning;
+    private boolean sweepRunning;
 
     private int orderInCategory = 101;
 
@@ -98,31 +127,42 @@ public class DiscoverCameras extends Settings implements DiscoveryListener, Onvi
         int DISCOVERY_TIMEOUT = 10000;
 
         super.onCreate(savedInstanceState);
-        discoveryManager = new DiscoveryManager();
-        onvifManager = new OnvifManager();
+        discovery = new StreamingDiscovery(DISCOVERY_TIMEOUT);
+        deviceInfoScheduler = new DeviceInfoScheduler(MAX_CONCURRENT_LOOKUPS, LOOKUP_DEADLINE, LOOKUP_ATTEMPTS, this);
+        subnetSweep = new SubnetSweep(MAX_SWEEP_SOCKETS, SWEEP_CONNECT_TIMEOUT);
+        onvifClient = OnvifClient.getInstance();
         multicastLock = wifiManager.createMulticastLock("ONVIF");
-        discoveryManager.setDiscoveryTimeout(DISCOVERY_TIMEOUT);
         multicastLock.acquire();
         cameraMenuItemMap = new HashMap<>();
-        hostnameCameraMap = new HashMap<>();
+        hostnameCameraMap = new ConcurrentHashMap<>();
         discoveredNetworkCameras = new ArrayList<>();
-        database = Room.databaseBuilder(this, CamerasDatabase.class, "camerasDB")
-                .build();
+        cameraRepository = CameraRepository.getInstance(this);
+        discoveredDeviceDAO = CamerasDatabase.getInstance(this).getDiscoveredDeviceDAO();
+        networkName = wifiManager.getConnectionInfo().getSSID().replace("\"", "");
+        refreshedHosts = new HashSet<>();
+        seenHosts = new HashSet<>();
 
         updateTitle(pageTitle);
-        onvifManager.setOnvifResponseListener(this);
-        Thread loadFromRoomThread = new Thread(() -> camerasFromRoom = database.getCameraDAO().getCameras());
-        loadFromRoomThread.start();
+        tasks.run(AppExecutors.Lane.IO, () -> {
+            CameraRegistry registry = cameraRepository.getRegistry();
+            List<DiscoveredDevice> devices = discoveredDeviceDAO.getDevices(networkName);
+            tasks.postToMain(() -> {
+                cameraRegistry = registry;
+                cachedDevices = devices;
+                showCachedDevices();
+            });
+        });
     }
 
     /**
-     * Used to release our MulticastLock
+     * Used to release our MulticastLock and cancel loading and searching
      */
     @Override
     protected void onDestroy() {
-        if(database != null){
-            database.close();
-        }
+        tasks.cancel();
+        discovery.cancel();
+        subnetSweep.cancel();
+        deviceInfoScheduler.cancel();
         multicastLock.release();
         super.onDestroy();
     }
@@ -151,10 +191,37 @@ public class DiscoverCameras extends Settings implements DiscoveryListener, Onvi
         }
 
         updateNetworkInfo();
+        showCachedDevices();
 
         return true;
     }
 
+    /**
+     * Lists the cameras cached from the last search on this network right away, then refreshes
+     * them in the background. Waits for both the cache and the menu to be ready
+     */
+    private void showCachedDevices(){
+        if(menu == null || cachedDevices == null){
+            return;
+        }
+        for(DiscoveredDevice device : cachedDevices){
+            Camera camera = device.toCamera();
+            if(hostnameCameraMap.containsKey(camera.getHostName())
+                    || cameraRegistry.findByHost(camera.getHostName()) != null
+                    || cameraRegistry.findBySerialNumber(camera.getSerialNumber()) != null){
+                // Subscribed since it was cached, the refresh expires it
+                continue;
+            }
+            hostnameCameraMap.put(camera.getHostName(), camera);
+            updateCameraMenuItem(camera);
+        }
+        Log.d(getString(pageTitle), "Listed " + discoveredNetworkCameras.size() + " cached devices of " + networkName);
+        cachedDevices = null;
+        if(wifiConnected()){
+            executeSearch(searchMenuItem);
+        }
+    }
+
     /**
      * Sets the default selected action menu item (Search)
      * @return 2 if in FTUE flow, 1 otherwise.
@@ -184,78 +251,309 @@ public class DiscoverCameras extends Settings implements DiscoveryListener, Onvi
      * @param item MenuItem selected
      */
     public void executeSearch(MenuItem item){
-        if(camerasFromRoom != null && notSearching){
-            hostnameCameraMap.clear();
-            discoveredNetworkCameras.clear();
-            for(Camera camera : cameraMenuItemMap.keySet()){
-                this.menu.removeItem(cameraMenuItemMap.get(camera).getItemId());
+        if(cameraRegistry != null && notSearching){
+            startRefresh();
+            discovery.discover(this);
+            discoveryRunning = true;
+            notSearching = false;
+        }
+    }
+
+    /**
+     * Method to execute on "Sweep Subnet" pressed, for networks that drop multicast discovery
+     * @param item MenuItem selected
+     */
+    public void executeSweep(MenuItem item){
+        if(cameraRegistry != null && notSearching){
+            startRefresh();
+            startSweep();
+        }
+    }
+
+    /**
+     * Starts a refresh of the listed cameras. They stay listed and their information is requested
+     * right away, whether or not discovery reports them again. Cameras that don't answer until the
+     * refresh settled are expired
+     */
+    private void startRefresh(){
+        // Cameras listed for another network are never seen and expire from the list
+        networkName = wifiManager.getConnectionInfo().getSSID().replace("\"", "");
+        refreshedHosts.clear();
+        seenHosts.clear();
+        refreshStartedAt = System.currentTimeMillis();
+        deviceInfoScheduler.cancel();
+        for(Camera camera : new ArrayList<>(discoveredNetworkCameras)){
+            if(networkName.equals(camera.getNetwork())){
+                refreshDiscoveredCamera(camera);
+            }
+        }
+    }
+
+    /**
+     * Removes the listed cameras that did not answer the last refresh, from the list and the cache
+     */
+    private void expireUnseenCameras(){
+        for(Camera camera : new ArrayList<>(discoveredNetworkCameras)){
+            if(!seenHosts.contains(camera.getHostName())){
+                Log.d(getString(pageTitle), "Expiring " + camera.getHostName());
+                dropDiscoveredCamera(camera);
             }
-            cameraMenuItemMap.clear();
+        }
+        long seenSince = refreshStartedAt;
+        AppExecutors.getInstance().submit(AppExecutors.Lane.IO,
+                () -> discoveredDeviceDAO.deleteUnseen(networkName, seenSince));
+    }
 
-            discoveryManager.discover(this);
+    /**
+     * Starts sweeping the subnet of the current Wi-Fi connection
+     */
+    private void startSweep(){
+        if(subnetSweep.sweep(wifiManager, this)){
+            sweepRunning = true;
             notSearching = false;
+            updateSubtitle(getString(R.string.subtitle_settings_discovery_cameras_sweeping));
         }
     }
 
     /**
-     * ONVIF listener method called when OnvifDiscovery started
+     * Allows a new search once discovery, the sweep and every lookup have ended
+     */
+    private void updateSearchState(){
+        boolean wasSearching = !notSearching;
+        notSearching = !discoveryRunning && !sweepRunning && !deviceInfoScheduler.isBusy();
+        if(wasSearching && notSearching && !isFinishing()){
+            expireUnseenCameras();
+        }
+    }
+
+    /**
+     * Discovery listener method called once the probe was sent
      */
     @Override
     public void onDiscoveryStarted() {
         Log.d(getString(pageTitle), "Network discovery started");
-        updateSubtitle("Searching...");
+        runOnUiThread(() -> updateSubtitle(getString(R.string.subtitle_settings_discovery_cameras_searching)));
     }
 
     /**
-     * ONVIF listener method called when devices discovered
-     * @param devices List of OnvifDevice objects
+     * Discovery listener method called for every device as soon as it answered, the device is
+     * listed and its information requested right away
+     * @param device Device that answered
      */
     @Override
-    public void onDevicesFound(List<Device> devices) {
-        Log.d(getString(pageTitle), "Network search completed; found: " + devices.size() + " devices");
-        OnvifDevice onvifDevice;
-
-        for(Device device : devices) {
-            boolean alreadyExistsInDB = false;
-            for(Camera existingCamera : camerasFromRoom){
-                // We want to check to see if the same hostname already exists in our database.
-                // If it doesn't we'll convert it to a Camera and show it in the list.
-                if(existingCamera.getHostName().equals(device.getHostName())){
-                    alreadyExistsInDB = true;
-                }
+    public void onDeviceFound(Device device) {
+        runOnUiThread(() -> addDiscoveredDevice(device));
+    }
+
+    /**
+     * Discovery listener method called when the search ended
+     * @param deviceCount Number of devices that answered
+     */
+    @Override
+    public void onDiscoveryFinished(int deviceCount) {
+        Log.d(getString(pageTitle), "Network search completed; found: " + deviceCount + " devices");
+        runOnUiThread(() -> {
+            discoveryRunning = false;
+            if(deviceCount == 0 && !isFinishing()){
+                // Nothing answered the multicast probe, the network probably drops it
+                startSweep();
             }
-            if(!alreadyExistsInDB){
-                Camera convertedCamera = new Camera();
-                convertedCamera.setHostName(device.getHostName());
-                convertedCamera.setNetwork(wifiManager.getConnectionInfo().getSSID().replace("\"", ""));
-                discoveredNetworkCameras.add(convertedCamera);
-                hostnameCameraMap.put(convertedCamera.getHostName(), convertedCamera);
+            updateSearchState();
+            if(!sweepRunning){
+                updateDiscoveredCount();
             }
+        });
+    }
+
+    /**
+     * Sweep listener method called for every host with an open ONVIF port. Unlike multicast
+     * results the host is only listed once GetDeviceInformation confirmed it's a camera
+     * @param onvifDevice Candidate device
+     */
+    @Override
+    public void onCandidateFound(OnvifDevice onvifDevice) {
+        runOnUiThread(() -> {
+            if(isFinishing() || cameraRegistry.findByHost(onvifDevice.getHostName()) != null){
+                return;
+            }
+            if(hostnameCameraMap.containsKey(onvifDevice.getHostName())){
+                refreshDiscoveredCamera(hostnameCameraMap.get(onvifDevice.getHostName()));
+                return;
+            }
+            Camera candidateCamera = new Camera();
+            candidateCamera.setHostName(onvifDevice.getHostName());
+            candidateCamera.setNetwork(networkName);
+            hostnameCameraMap.put(candidateCamera.getHostName(), candidateCamera);
+            refreshedHosts.add(candidateCamera.getHostName());
+            deviceInfoScheduler.enqueue(onvifDevice);
+        });
+    }
+
+    /**
+     * Sweep listener method called when the sweep ended
+     * @param candidateCount Number of hosts with an open ONVIF port
+     */
+    @Override
+    public void onSweepFinished(int candidateCount) {
+        Log.d(getString(pageTitle), "Subnet sweep completed; candidates: " + candidateCount);
+        runOnUiThread(() -> {
+            sweepRunning = false;
+            updateSearchState();
+            updateDiscoveredCount();
+        });
+    }
+
+    /**
+     * Lists a discovered device unless it's already subscribed and starts getting its information
+     * @param device Device that answered
+     */
+    private void addDiscoveredDevice(Device device) {
+        if (isFinishing()) {
+            return;
+        }
+        if (hostnameCameraMap.containsKey(device.getHostName())) {
+            refreshDiscoveredCamera(hostnameCameraMap.get(device.getHostName()));
+            return;
+        }
+        // We want to check to see if the same hostname already exists in our database.
+        // If it doesn't we'll convert it to a Camera and show it in the list.
+        if(cameraRegistry.findByHost(device.getHostName()) != null){
+            return;
         }
+        Camera convertedCamera = new Camera();
+        convertedCamera.setHostName(device.getHostName());
+        convertedCamera.setNetwork(networkName);
+        discoveredNetworkCameras.add(convertedCamera);
+        hostnameCameraMap.put(convertedCamera.getHostName(), convertedCamera);
 
-        // Create the menu items now and we'll update them when either getDeviceInformation
+        // Create the menu item now and we'll update it when either getDeviceInformation
         // successfully retrieves information or onError throws an authentication issue signaling a
         // locked camera.
-        runOnUiThread(this::createCameraMenuItems);
+        createCameraMenuItem(convertedCamera);
 
-        // getDeviceInformation is used in two ways (1) get device information (2) determine if
-        // device is locked. If locked, onError is called and onDeviceInformationReceived is not.
-        for(Camera camera : discoveredNetworkCameras){
-            onvifDevice = new OnvifDevice(camera.getHostName());
-            onvifManager.getDeviceInformation(onvifDevice, this);
+        // The device information lookup is used in two ways (1) get device information
+        // (2) determine if device is locked. The scheduler limits how many run at once.
+        refreshedHosts.add(convertedCamera.getHostName());
+        deviceInfoScheduler.enqueue(new OnvifDevice(convertedCamera.getHostName()));
+
+        // We can alert the user that we've found X many new devices even if we haven't gotten
+        // information on them yet.
+        updateDiscoveredCount();
+    }
+
+    /**
+     * Requests the information of a listed camera again, once per refresh, so a cached entry is
+     * updated rather than listed twice. It counts as seen once it answered or refused the request
+     * @param camera Listed camera to refresh
+     */
+    private void refreshDiscoveredCamera(Camera camera) {
+        if(!refreshedHosts.add(camera.getHostName())){
+            return;
         }
+        if(camera.getUsername() != null){
+            deviceInfoScheduler.enqueue(new OnvifDevice(camera.getHostName(), camera.getUsername(), camera.getPassword()));
+        }else{
+            deviceInfoScheduler.enqueue(new OnvifDevice(camera.getHostName()));
+        }
+        updateDiscoveredCount();
+    }
 
-        // There's a lot of work going on in the background but we want to update the user on our
-        // progress. We can alert them that we've found X many new devices even if we haven't
-        // gotten information on them yet.
-        runOnUiThread(() -> {
-            if(discoveredNetworkCameras.size() == 1){
-                updateSubtitle(getString(R.string.subtitle_settings_discovery_cameras_singular, discoveredNetworkCameras.size()));
-            }else{
-                updateSubtitle(getString(R.string.subtitle_settings_discovery_cameras_plural, discoveredNetworkCameras.size()));
-            }
-        });
+    /**
+     * Marks a camera as seen by the current refresh and caches it for the next visit
+     * @param camera Camera that answered
+     */
+    private void cacheDiscoveredCamera(Camera camera) {
+        seenHosts.add(camera.getHostName());
+        DiscoveredDevice device = DiscoveredDevice.fromCamera(camera, System.currentTimeMillis());
+        AppExecutors.getInstance().submit(AppExecutors.Lane.IO, () -> discoveredDeviceDAO.put(device));
+    }
+
+    /**
+     * Shows the number of new cameras found so far and how many of them were checked
+     */
+    private void updateDiscoveredCount() {
+        if(deviceInfoScheduler.isBusy()){
+            updateSubtitle(getString(R.string.subtitle_settings_discovery_cameras_checking, discoveredNetworkCameras.size(),
+                    deviceInfoScheduler.getCompleted(), deviceInfoScheduler.getTotal()));
+        }else if(discoveredNetworkCameras.size() == 1){
+            updateSubtitle(getString(R.string.subtitle_settings_discovery_cameras_singular, discoveredNetworkCameras.size()));
+        }else{
+            updateSubtitle(getString(R.string.subtitle_settings_discovery_cameras_plural, discoveredNetworkCameras.size()));
+        }
+    }
+
+    /**
+     * Scheduler listener method for receiving device information
+     * @param onvifDevice Camera that answered
+     * @param deviceInformation Information of the camera
+     */
+    @Override
+    public void onDeviceInformation(OnvifDevice onvifDevice, OnvifDeviceInformation deviceInformation) {
+        onDeviceInformationReceived(onvifDevice, deviceInformation);
+    }
 
+    /**
+     * Scheduler listener method called when a camera requires credentials
+     * @param onvifDevice Camera that refused the request
+     */
+    @Override
+    public void onDeviceLocked(OnvifDevice onvifDevice) {
+        onError(onvifDevice, Camera.ERROR_UNAUTHORIZED, null);
+    }
+
+    /**
+     * Scheduler listener method called when a camera never answered, it is dropped from the list
+     * as it can't be subscribed to
+     * @param onvifDevice Camera that failed
+     * @param errorCode Error of the last attempt
+     */
+    @Override
+    public void onDeviceFailed(OnvifDevice onvifDevice, int errorCode) {
+        Log.d(getString(pageTitle), "No device information from " + onvifDevice.getHostName() + ": " + errorCode);
+        Camera camera = hostnameCameraMap.get(onvifDevice.getHostName());
+        if(camera != null){
+            dropDiscoveredCamera(camera);
+        }
+    }
+
+    /**
+     * Removes a discovered camera from the list
+     * @param camera Camera to remove
+     */
+    private void dropDiscoveredCamera(Camera camera){
+        forgetDiscoveredCamera(camera);
+        MenuItem menuItem = cameraMenuItemMap.remove(camera);
+        if(menuItem != null){
+            // Camera items share one item ID, so hide the item instead of removing it by ID
+            menuItem.setVisible(false);
+        }
+        updateDiscoveredCount();
+    }
+
+    /**
+     * Stops tracking a discovered camera and removes it from the cache, its MenuItem is kept
+     * @param camera Camera to forget
+     */
+    private void forgetDiscoveredCamera(Camera camera){
+        hostnameCameraMap.remove(camera.getHostName());
+        // Camera.equals matches every unsubscribed camera by their unset UID, remove this instance
+        discoveredNetworkCameras.removeIf(listedCamera -> listedCamera == camera);
+        if(camera.getNetwork() != null){
+            AppExecutors.getInstance().submit(AppExecutors.Lane.IO,
+                    () -> discoveredDeviceDAO.delete(camera.getNetwork(), camera.getHostName()));
+        }
+    }
+
+    /**
+     * Scheduler listener method called whenever a lookup starts or ends
+     * @param inFlight Lookups that have not ended
+     * @param completed Lookups that ended
+     * @param total Lookups started in this search
+     */
+    @Override
+    public void onProgress(int inFlight, int completed, int total) {
+        updateSearchState();
+        updateDiscoveredCount();
     }
 
     /**
@@ -267,7 +565,6 @@ public class DiscoverCameras extends Settings implements DiscoveryListener, Onvi
     public void onDeviceInformationReceived(OnvifDevice onvifDevice, OnvifDeviceInformation deviceInformation) {
         Camera camera = hostnameCameraMap.get(onvifDevice.getHostName());
 
-        notSearching = true;
         if(camera != null){
             camera.setLocked(false);
             camera.setModel(deviceInformation.getModel());
@@ -276,10 +573,41 @@ public class DiscoverCameras extends Settings implements DiscoveryListener, Onvi
             camera.setManufacturer(deviceInformation.getManufacturer());
             camera.setSerialNumber(deviceInformation.getSerialNumber());
 
-            runOnUiThread(() -> updateCameraMenuItem(camera));
+            if(cameraRegistry.findBySerialNumber(camera.getSerialNumber()) != null){
+                // Already subscribed under another address, e.g. after a DHCP lease change
+                runOnUiThread(() -> dropDiscoveredCamera(camera));
+                return;
+            }
+            runOnUiThread(() -> {
+                if(isListedElsewhere(camera)){
+                    // The sweep reports every open port, a camera may serve ONVIF on several
+                    dropDiscoveredCamera(camera);
+                    return;
+                }
+                cacheDiscoveredCamera(camera);
+                updateCameraMenuItem(camera);
+            });
         }
     }
 
+    /**
+     * Whether a camera with the same serial number is already listed under another host name
+     * @param camera Camera that answered
+     * @return True if the camera is listed under another host name
+     */
+    private boolean isListedElsewhere(Camera camera) {
+        if(camera.getSerialNumber() == null || camera.getSerialNumber().isEmpty()){
+            return false;
+        }
+        for(Camera listedCamera : discoveredNetworkCameras){
+            if(camera.getSerialNumber().equals(listedCamera.getSerialNumber())
+                    && !camera.getHostName().equals(listedCamera.getHostName())){
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * ONVIF listener method for network responses - not used
      * @param onvifDevice Not used
@@ -301,26 +629,27 @@ public class DiscoverCameras extends Settings implements DiscoveryListener, Onvi
         Camera camera = hostnameCameraMap.get(onvifDevice.getHostName());
 
         if(camera != null && errorCode == Camera.ERROR_UNAUTHORIZED){
-            notSearching = true;
             // Error code ERROR_UNAUTHORIZED(401) indicates an access denied error when trying to get details from an
             // OnvifDevice. With this, we alert the user the camera is locked and requires
             // credentials.
             camera.setLocked(true);
-            runOnUiThread(() -> updateCameraMenuItem(camera));
+            runOnUiThread(() -> {
+                cacheDiscoveredCamera(camera);
+                updateCameraMenuItem(camera);
+            });
         }
     }
 
     /**
-     * Method to create the individual camera MenuItems
+     * Method to create the MenuItem of a discovered camera
+     * @param camera Camera object to make a MenuItem for
      */
-    private void createCameraMenuItems(){
-        for(Camera camera : discoveredNetworkCameras){
-            MenuItem menuItem = this.menu.add(Menu.NONE, this.menu.hashCode(), orderInCategory, camera.getPresentableName());
-            cameraMenuItemMap.put(camera, menuItem);
-            menuItem.setIcon(R.drawable.ic_camera);
-            menuItem.setEnabled(false);
-            orderInCategory++;
-        }
+    private void createCameraMenuItem(Camera camera){
+        MenuItem menuItem = this.menu.add(Menu.NONE, this.menu.hashCode(), orderInCategory, camera.getPresentableName());
+        cameraMenuItemMap.put(camera, menuItem);
+        menuItem.setIcon(R.drawable.ic_camera);
+        menuItem.setEnabled(false);
+        orderInCategory++;
     }
 
     /**
@@ -328,6 +657,12 @@ public class DiscoverCameras extends Settings implements DiscoveryListener, Onvi
      * @param camera Camera object to make a MenuItem for
      */
     private void updateCameraMenuItem(Camera camera){
+        if(!cameraMenuItemMap.containsKey(camera) && hostnameCameraMap.containsKey(camera.getHostName())){
+            // Sweep candidates are listed once they answered
+            discoveredNetworkCameras.add(camera);
+            createCameraMenuItem(camera);
+            updateDiscoveredCount();
+        }
         MenuItem menuItem = cameraMenuItemMap.get(camera);
 
         if(menuItem != null){
@@ -366,7 +701,7 @@ public class DiscoverCameras extends Settings implements DiscoveryListener, Onvi
         builder.setPositiveButton(getString(R.string.ad_settings_discover_unlock), (dialogInterface, i) -> {
             camera.setCredentials(username.getText().toString(), password.getText().toString());
             OnvifDevice onvifDevice = new OnvifDevice(camera.getHostName(), camera.getUsername(), camera.getPassword());
-            onvifManager.getDeviceInformation(onvifDevice, this);
+            onvifClient.getDeviceInformation(onvifDevice, this, this);
         });
 
         AlertDialog unlockDialog = builder.create();
@@ -380,8 +715,12 @@ public class DiscoverCameras extends Settings implements DiscoveryListener, Onvi
      * @param menuItem MenuItem that relates to the chosen camera, used to modify appearance
      */
     private void subscribeToCamera(Camera camera, MenuItem menuItem){
-        Thread addCameraThread = new Thread(() -> database.getCameraDAO().add(camera));
-        addCameraThread.start();
+        forgetDiscoveredCamera(camera);
+        cameraMenuItemMap.remove(camera);
+        AppExecutors.getInstance().submit(AppExecutors.Lane.IO, () -> {
+            cameraRepository.add(camera);
+            cameraRegistry = cameraRepository.getRegistry();
+        });
         menuItem.setTitle(camera.getPresentableName());
         menuItem.setIcon(R.drawable.ic_camera_subscribed);
         menuItem.setEnabled(false);
@@ -32,7 +32,6 @@ EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.vuzix.securityviewer.settings;
 
 import android.app.AlertDialog;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.view.Menu;
 import android.view.MenuItem;
@@ -41,16 +40,21 @@ import android.widget.EditText;
 import android.widget.TextView;
 import android.widget.Toast;
 
-import androidx.room.Room;
 
 import com.vuzix.hud.actionmenu.ActionMenuActivity;
+import com.vuzix.securityviewer.CameraRepository;
 import com.vuzix.securityviewer.CamerasDatabase;
 import com.vuzix.securityviewer.R;
 import com.vuzix.securityviewer.model.Camera;
+import com.vuzix.securityviewer.model.MediaProfileDetails;
+import com.vuzix.securityviewer.onvif.GetProfileDetailsRequest;
+import com.vuzix.securityviewer.onvif.OnvifClient;
+import com.vuzix.securityviewer.onvif.ProfileDetailsParser;
+import com.vuzix.securityviewer.utils.AppExecutors;
+import com.vuzix.securityviewer.utils.TaskScope;
 
-import java.lang.ref.WeakReference;
+import java.util.List;
 
-import be.teletask.onvif.OnvifManager;
 import be.teletask.onvif.listeners.OnvifDeviceInformationListener;
 import be.teletask.onvif.listeners.OnvifResponseListener;
 import be.teletask.onvif.models.OnvifDevice;
@@ -64,7 +68,9 @@ public class EditCamera extends ActionMenuActivity implements OnvifDeviceInforma
 
     private Menu menu;
     private CamerasDatabase database;
-    private OnvifManager onvifManager;
+    private CameraRepository cameraRepository;
+    private final TaskScope tasks = new TaskScope();
+    private OnvifClient onvifClient;
 
     private TextView pageTitle;
     private TextView hostName;
@@ -76,6 +82,7 @@ public class EditCamera extends ActionMenuActivity implements OnvifDeviceInforma
     private TextView firmwareVersion;
     private TextView username;
     private TextView password;
+    private TextView streamProfile;
 
     private Camera camera;
 
@@ -87,8 +94,7 @@ public class EditCamera extends ActionMenuActivity implements OnvifDeviceInforma
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_edit_camera);
-        onvifManager = new OnvifManager();
-        onvifManager.setOnvifResponseListener(this);
+        onvifClient = OnvifClient.getInstance();
         pageTitle = findViewById(R.id.header_page_title);
         hostName = findViewById(R.id.tv_settings_manage_edit_hostname);
         nickname = findViewById(R.id.tv_settings_manage_edit_nickname);
@@ -99,9 +105,10 @@ public class EditCamera extends ActionMenuActivity implements OnvifDeviceInforma
         firmwareVersion = findViewById(R.id.tv_settings_manage_edit_firmware);
         username = findViewById(R.id.tv_settings_manage_edit_username);
         password = findViewById(R.id.tv_settings_manage_edit_password);
+        streamProfile = findViewById(R.id.tv_settings_manage_edit_profile);
 
-        database = Room.databaseBuilder(this, CamerasDatabase.class, "camerasDB")
-                .build();
+        database = CamerasDatabase.getInstance(this);
+        cameraRepository = CameraRepository.getInstance(this);
 
         int cameraUID = getIntent().getIntExtra(Manage.UID, -1);
         if(cameraUID == -1){
@@ -109,19 +116,16 @@ public class EditCamera extends ActionMenuActivity implements OnvifDeviceInforma
             finish();
         }
 
-        LoadDetailsTask loadDetailsTask = new LoadDetailsTask(this);
-        loadDetailsTask.execute(cameraUID);
+        loadDetails(cameraUID);
 
     }
 
     /**
-     * Override to close database connection
+     * Override to cancel loading
      */
     @Override
     protected void onDestroy() {
-        if(database != null){
-            database.close();
-        }
+        tasks.cancel();
         super.onDestroy();
     }
 
@@ -139,6 +143,7 @@ public class EditCamera extends ActionMenuActivity implements OnvifDeviceInforma
         firmwareVersion.setText((camera.getFirmwareVersion()!=null) ? camera.getFirmwareVersion() : getString(R.string.tv_settings_not_available));
         username.setText((camera.getUsername()!=null) ? camera.getUsername() : getString(R.string.tv_settings_not_available));
         password.setText((camera.getPassword()!=null) ? getString(R.string.tv_settings_password_placeholder) : getString(R.string.tv_settings_not_available));
+        streamProfile.setText((camera.getStreamProfileToken()!=null) ? camera.getStreamProfileToken() : getString(R.string.tv_settings_profile_auto));
     }
 
     /**
@@ -168,6 +173,10 @@ public class EditCamera extends ActionMenuActivity implements OnvifDeviceInforma
      * @param menuItem menu item selected
      */
     public void onNicknameClicked(MenuItem menuItem){
+        if(camera == null){
+            // Still loading
+            return;
+        }
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle(getString(R.string.ad_settings_manage_edit_nickname));
 
@@ -192,6 +201,10 @@ public class EditCamera extends ActionMenuActivity implements OnvifDeviceInforma
      * @param menuItem menu item selected
      */
     public void onCredentialsClicked(MenuItem menuItem){
+        if(camera == null){
+            // Still loading
+            return;
+        }
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle(getString(R.string.ad_settings_manage_edit_credentials));
 
@@ -205,18 +218,73 @@ public class EditCamera extends ActionMenuActivity implements OnvifDeviceInforma
             updateCamera(camera);
             fetchCameraDetails();
             OnvifDevice onvifDevice = new OnvifDevice(camera.getHostName(), camera.getUsername(), camera.getPassword());
-            onvifManager.getDeviceInformation(onvifDevice, this);
+            onvifClient.getDeviceInformation(onvifDevice, this, this);
         });
 
         AlertDialog unlockDialog = builder.create();
         unlockDialog.show();
     }
 
+    /**
+     * Triggered when "Stream Profile" pressed, asks the camera for its media profiles so one can
+     * be pinned
+     * @param menuItem menu item selected
+     */
+    public void onStreamProfileClicked(MenuItem menuItem){
+        if(camera == null){
+            // Still loading
+            return;
+        }
+        OnvifDevice onvifDevice = new OnvifDevice(camera.getHostName(), camera.getUsername(), camera.getPassword());
+        onvifClient.sendOnvifRequest(onvifDevice, new GetProfileDetailsRequest(), this);
+    }
+
+    /**
+     * Shows the media profiles of the camera, selecting one pins it for streaming while
+     * "Automatic" lets StreamActivity pick the profile that best fits the display
+     * @param profiles Media profiles returned by the camera
+     */
+    private void showStreamProfileDialog(List<MediaProfileDetails> profiles){
+        if(profiles.isEmpty()){
+            Toast.makeText(this, getString(R.string.toast_error), Toast.LENGTH_LONG).show();
+            return;
+        }
+
+        String[] profileNames = new String[profiles.size() + 1];
+        profileNames[0] = getString(R.string.tv_settings_profile_auto);
+        int checkedItem = 0;
+        for(int i = 0; i < profiles.size(); i++){
+            MediaProfileDetails profile = profiles.get(i);
+            profileNames[i + 1] = getString(R.string.ad_settings_manage_edit_profile_item, profile.getName(),
+                    profile.getWidth(), profile.getHeight(), (profile.getEncoding()!=null) ? profile.getEncoding() : "");
+            if(profile.getToken() != null && profile.getToken().equals(camera.getStreamProfileToken())){
+                checkedItem = i + 1;
+            }
+        }
+
+        AlertDialog.Builder builder = new AlertDialog.Builder(this);
+        builder.setTitle(getString(R.string.ad_settings_manage_edit_profile));
+        builder.setSingleChoiceItems(profileNames, checkedItem, (dialogInterface, i) -> {
+            camera.setStreamProfileToken((i == 0) ? null : profiles.get(i - 1).getToken());
+            updateCamera(camera);
+            invalidateStreamCache(camera);
+            fetchCameraDetails();
+            dialogInterface.dismiss();
+        });
+
+        AlertDialog profileDialog = builder.create();
+        profileDialog.show();
+    }
+
     /**
      * Triggered when "Remove" pressed
      * @param menuItem menu item selected
      */
     public void onRemoveClicked(MenuItem menuItem){
+        if(camera == null){
+            // Still loading
+            return;
+        }
         AlertDialog.Builder builder = new AlertDialog.Builder(this);
         builder.setTitle(getString(R.string.ad_settings_manage_edit_remove_cam, camera.getPresentableName()));
 
@@ -236,8 +304,7 @@ public class EditCamera extends ActionMenuActivity implements OnvifDeviceInforma
      * @param camera Camera to delete
      */
     private void deleteCamera(Camera camera){
-        Thread deleteCameraThread = new Thread(() -> database.getCameraDAO().delete(camera));
-        deleteCameraThread.start();
+        AppExecutors.getInstance().submit(AppExecutors.Lane.IO, () -> cameraRepository.delete(camera));
     }
 
     /**
@@ -245,8 +312,15 @@ public class EditCamera extends ActionMenuActivity implements OnvifDeviceInforma
      * @param camera Camera to update
      */
     private void updateCamera(Camera camera){
-        Thread updateCameraThread = new Thread(() -> database.getCameraDAO().update(camera));
-        updateCameraThread.start();
+        AppExecutors.getInstance().submit(AppExecutors.Lane.IO, () -> cameraRepository.update(camera));
+    }
+
+    /**
+     * Method for dropping the cached stream URI of a camera, used when its profile changes
+     * @param camera Camera whose stream URI should be resolved again
+     */
+    private void invalidateStreamCache(Camera camera){
+        AppExecutors.getInstance().submit(AppExecutors.Lane.IO, () -> database.getStreamCacheDAO().invalidateStreamUri(camera.getUID()));
     }
 
     /**
@@ -269,14 +343,19 @@ public class EditCamera extends ActionMenuActivity implements OnvifDeviceInforma
     }
 
     /**
-     * ONVIF listener method triggered when response received from a camera, not used
+     * ONVIF listener method triggered when response received from a camera, used for the media
+     * profiles requested by "Stream Profile"
      * @param onvifDevice onvifDevice that received a response, we use host name to match with a
      *                    camera
      * @param onvifResponse The OnvifResponse object containing response information
      */
     @Override
     public void onResponse(OnvifDevice onvifDevice, OnvifResponse onvifResponse) {
-
+        if(onvifResponse.request() instanceof GetProfileDetailsRequest
+                && onvifDevice.getHostName().equals(camera.getHostName())){
+            List<MediaProfileDetails> profiles = new ProfileDetailsParser().parse(onvifResponse.getXml());
+            runOnUiThread(() -> showStreamProfileDialog(profiles));
+        }
     }
 
     /**
@@ -302,49 +381,20 @@ public class EditCamera extends ActionMenuActivity implements OnvifDeviceInforma
         }
     }
 
-    private static class LoadDetailsTask extends AsyncTask<Integer, Void, Void> {
-
-
-        private WeakReference<EditCamera> editReference;
-        private Camera camera;
-
-        /**
-         * Constructor for LoadDetailsTask, creates a weak reference to EditCamera
-         * @param context Context for EditCamera
-         */
-        LoadDetailsTask(EditCamera context) {
-            editReference = new WeakReference<>(context);
-        }
-
-        /**
-         * Method for loading camera details from the database
-         * @param uid Unique ID for a camera, auto-generated by Room
-         * @return Null
-         */
-        @Override
-        protected Void doInBackground(Integer... uid) {
-            EditCamera editActivity = editReference.get();
-            if (editActivity == null || editActivity.isFinishing()) {
-                return null;
-            }
-
-            camera = editActivity.database.getCameraDAO().getCamera(uid[0]);
-            return null;
-        }
-
-        /**
-         * Update the UI with details from the camera
-         * @param aVoid Null
-         */
-        @Override
-        protected void onPostExecute(Void aVoid) {
-            EditCamera editActivity = editReference.get();
-            if (editActivity == null || editActivity.isFinishing()) {
-                return;
-            }
-
-            editActivity.camera = camera;
-            editActivity.fetchCameraDetails();
-        }
+    /**
+     * Method for loading camera details from the database on the I/O lane, then updating the UI
+     * with them
+     * @param uid Unique ID for a camera, auto-generated by Room
+     */
+    private void loadDetails(int uid) {
+        tasks.run(AppExecutors.Lane.IO, () -> {
+            Camera loadedCamera = cameraRepository.getCamera(uid);
+            tasks.postToMain(() -> {
+                if (!isFinishing()) {
+                    camera = loadedCamera;
+                    fetchCameraDetails();
+                }
+            });
+        });
     }
-}
\ No newline at end of file
+}
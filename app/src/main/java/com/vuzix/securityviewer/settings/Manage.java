@@ -32,20 +32,19 @@ EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
 package com.vuzix.securityviewer.settings;
 
 import android.content.Intent;
-import android.os.AsyncTask;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.Menu;
 import android.view.MenuItem;
 import android.widget.Toast;
 
-import androidx.room.Room;
 
-import com.vuzix.securityviewer.CamerasDatabase;
+import com.vuzix.securityviewer.CameraRepository;
 import com.vuzix.securityviewer.R;
 import com.vuzix.securityviewer.model.Camera;
+import com.vuzix.securityviewer.utils.AppExecutors;
+import com.vuzix.securityviewer.utils.TaskScope;
 
-import java.lang.ref.WeakReference;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -57,6 +56,7 @@ public class Manage extends Settings{
     private final static int MENU_BACK = 0;
     private Menu menu;
     private Map<MenuItem, Camera> buttonCameraMap;
+    private final TaskScope tasks = new TaskScope();
 
     /**
      * Initially set our views and read the database for existing cameras
@@ -80,6 +80,15 @@ public class Manage extends Settings{
         super.onResume();
     }
 
+    /**
+     * Used to cancel camera loading still in progress
+     */
+    @Override
+    protected void onDestroy() {
+        tasks.cancel();
+        super.onDestroy();
+    }
+
     /**
      * Create the action menu and initialize the menu items
      * @param menu Menu to inflate
@@ -91,8 +100,7 @@ public class Manage extends Settings{
         getMenuInflater().inflate(R.menu.settings_manage, menu);
         this.menu = menu;
 
-        LoadCamerasTask loadCamerasTask = new LoadCamerasTask(this);
-        loadCamerasTask.execute();
+        loadCameras();
 
         return true;
     }
@@ -144,46 +152,17 @@ public class Manage extends Settings{
 
     }
 
-    private static class LoadCamerasTask extends AsyncTask<Void, Void, Void> {
-
-        CamerasDatabase database;
-        private WeakReference<Manage> manageReference;
-        private List<Camera> camerasFromRoom;
-
-        /**
-         * Constructor for LoadCamerasTask, connects to database and creates a weak reference to the
-         * Manage activity
-         * @param context Context of Manage executing the task
-         */
-        LoadCamerasTask(Manage context) {
-            manageReference = new WeakReference<>(context);
-            database = Room.databaseBuilder(context, CamerasDatabase.class, "camerasDB")
-                    .build();
-        }
-
-        /**
-         * Work to be done in the background, need to load existing cameras from database
-         * @param voids Not used, null
-         * @return Null
-         */
-        @Override
-        protected Void doInBackground(Void... voids) {
-            camerasFromRoom = database.getCameraDAO().getCameras();
-            return null;
-        }
-
-        /**
-         * Executed on cameras loaded, initializes the recycler view with our cameras
-         * @param aVoid Null
-         */
-        @Override
-        protected void onPostExecute(Void aVoid) {
-            Manage manageActivity = manageReference.get();
-            if (manageActivity == null || manageActivity.isFinishing()) {
-                return;
-            }
-            database.close();
-            manageActivity.createCameraMenuItems(camerasFromRoom);
-        }
+    /**
+     * Loads existing cameras from the database on the I/O lane, then creates their menu items
+     */
+    private void loadCameras() {
+        tasks.run(AppExecutors.Lane.IO, () -> {
+            List<Camera> camerasFromRoom = CameraRepository.getInstance(this).getCameras();
+            tasks.postToMain(() -> {
+                if (!isFinishing()) {
+                    createCameraMenuItems(camerasFromRoom);
+                }
+            });
+        });
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,205 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process-wide executors for background work, split into lanes so slow discovery or database work
+ * never queues in front of opening a stream. Each lane has a fixed number of threads running at
+ * its own priority and keeps track of how deep its queue has grown.
+ */
+public class AppExecutors {
+
+    private static final String TAG = "AppExecutors";
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    /**
+     * Lanes work can be submitted to
+     */
+    public enum Lane {
+        /** Work the user is waiting on, such as opening a stream */
+        INTERACTIVE(2, Process.THREAD_PRIORITY_DEFAULT + Process.THREAD_PRIORITY_MORE_FAVORABLE),
+        /** Room reads and writes */
+        IO(2, Process.THREAD_PRIORITY_BACKGROUND),
+        /** Discovery, prefetching and health checks */
+        BACKGROUND(3, Process.THREAD_PRIORITY_BACKGROUND + Process.THREAD_PRIORITY_LESS_FAVORABLE);
+
+        private final int threads;
+        private final int threadPriority;
+
+        Lane(int threads, int threadPriority) {
+            this.threads = threads;
+            this.threadPriority = threadPriority;
+        }
+    }
+
+    private static AppExecutors instance;
+
+    private final ThreadPoolExecutor[] executors = new ThreadPoolExecutor[Lane.values().length];
+    private final AtomicInteger[] peakQueueDepths = new AtomicInteger[Lane.values().length];
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+
+    /**
+     * Constructor for AppExecutors, creates one pool per lane. The interactive lane starts its
+     * threads up front so opening a stream never pays for thread creation
+     */
+    private AppExecutors() {
+        for (Lane lane : Lane.values()) {
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(lane.threads, lane.threads,
+                    KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                    new LaneThreadFactory(lane));
+            if (lane == Lane.INTERACTIVE) {
+                executor.prestartAllCoreThreads();
+            } else {
+                executor.allowCoreThreadTimeOut(true);
+            }
+            executors[lane.ordinal()] = executor;
+            peakQueueDepths[lane.ordinal()] = new AtomicInteger();
+        }
+    }
+
+    /**
+     * Get the process-wide executors
+     * @return AppExecutors instance
+     */
+    public static synchronized AppExecutors getInstance() {
+        if (instance == null) {
+            instance = new AppExecutors();
+        }
+        return instance;
+    }
+
+    /**
+     * Queues work on a lane
+     * @param lane Lane to run the work on
+     * @param task Work to run
+     * @return Future that can be used to cancel the work
+     */
+    public Future<?> submit(Lane lane, Runnable task) {
+        ThreadPoolExecutor executor = executors[lane.ordinal()];
+        Future<?> future = executor.submit(task);
+        int queueDepth = executor.getQueue().size();
+        AtomicInteger peakQueueDepth = peakQueueDepths[lane.ordinal()];
+        int peak = peakQueueDepth.get();
+        while (queueDepth > peak && !peakQueueDepth.compareAndSet(peak, queueDepth)) {
+            peak = peakQueueDepth.get();
+        }
+        return future;
+    }
+
+    /**
+     * Posts work to the main thread
+     * @param task Work to run on the main thread
+     */
+    public void postToMain(Runnable task) {
+        mainHandler.post(task);
+    }
+
+    /**
+     * Get the number of tasks waiting on a lane
+     * @param lane Lane to inspect
+     * @return Tasks queued but not yet started
+     */
+    public int getQueueDepth(Lane lane) {
+        return executors[lane.ordinal()].getQueue().size();
+    }
+
+    /**
+     * Get the deepest the queue of a lane has been since the process started
+     * @param lane Lane to inspect
+     * @return Peak number of tasks waiting
+     */
+    public int getPeakQueueDepth(Lane lane) {
+        return peakQueueDepths[lane.ordinal()].get();
+    }
+
+    /**
+     * Get the number of tasks currently running on a lane
+     * @param lane Lane to inspect
+     * @return Tasks running
+     */
+    public int getActiveCount(Lane lane) {
+        return executors[lane.ordinal()].getActiveCount();
+    }
+
+    /**
+     * Get the number of tasks a lane has finished
+     * @param lane Lane to inspect
+     * @return Tasks completed
+     */
+    public long getCompletedTaskCount(Lane lane) {
+        return executors[lane.ordinal()].getCompletedTaskCount();
+    }
+
+    /**
+     * Logs the queue metrics of every lane
+     */
+    public void logMetrics() {
+        for (Lane lane : Lane.values()) {
+            Log.d(TAG, lane + " queued: " + getQueueDepth(lane) + " peak: " + getPeakQueueDepth(lane)
+                    + " active: " + getActiveCount(lane) + " completed: " + getCompletedTaskCount(lane));
+        }
+    }
+
+    /**
+     * Creates named threads running at the priority of their lane
+     */
+    private static class LaneThreadFactory implements ThreadFactory {
+
+        private final Lane lane;
+        private final AtomicInteger threadCount = new AtomicInteger();
+
+        LaneThreadFactory(Lane lane) {
+            this.lane = lane;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(() -> {
+                Process.setThreadPriority(lane.threadPriority);
+                runnable.run();
+            }, lane.name().toLowerCase() + "-" + threadCount.incrementAndGet());
+            return thread;
+        }
+    }
+}
@@ -35,26 +35,105 @@ import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.FrameLayout;
+import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.vuzix.securityviewer.R;
 import com.vuzix.securityviewer.model.Camera;
+import com.vuzix.securityviewer.model.CameraHealth;
 
 import java.util.List;
+import java.util.Objects;
 
-public class CameraCardAdapter extends RecyclerView.Adapter<CameraCardAdapter.CameraCard> {
+/**
+ * Adapter for the home screen carousel. Cards are keyed by camera UID and new camera lists are
+ * diffed against the current one, so reloading the list or moving the selection only rebinds the
+ * cards that actually changed. Selection, name and health changes are bound as payloads and leave
+ * the thumbnail alone.
+ */
+public class CameraCardAdapter extends ListAdapter<Camera, CameraCardAdapter.CameraCard> {
+
+    private static final Object PAYLOAD_SELECTION = new Object();
+    private static final Object PAYLOAD_NAME = new Object();
+    private static final Object PAYLOAD_STATUS = new Object();
+
+    private static final DiffUtil.ItemCallback<Camera> DIFF_CALLBACK = new DiffUtil.ItemCallback<Camera>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull Camera oldCamera, @NonNull Camera newCamera) {
+            return oldCamera.getUID() == newCamera.getUID();
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull Camera oldCamera, @NonNull Camera newCamera) {
+            return Objects.equals(oldCamera.getPresentableName(), newCamera.getPresentableName())
+                    && Objects.equals(oldCamera.getHostName(), newCamera.getHostName());
+        }
+
+        @Override
+        public Object getChangePayload(@NonNull Camera oldCamera, @NonNull Camera newCamera) {
+            if (Objects.equals(oldCamera.getHostName(), newCamera.getHostName())) {
+                return PAYLOAD_NAME;
+            }
+            return null;
+        }
+    };
+
+    private int selectedUID = -1;
+
+    /**
+     * Constructor for CameraCardAdaptor, cameras are handed over through submitList
+     */
+    public CameraCardAdapter(){
+        super(DIFF_CALLBACK);
+        setHasStableIds(true);
+    }
+
+    /**
+     * Moves the selection frame to another card, only the two affected cards are rebound
+     * @param position Position of the newly selected camera
+     */
+    public void setSelectedPosition(int position) {
+        int previousPosition = getSelectedPosition();
+        selectedUID = (position >= 0 && position < getItemCount()) ? getItem(position).getUID() : -1;
+        if (previousPosition != RecyclerView.NO_POSITION && previousPosition != position) {
+            notifyItemChanged(previousPosition, PAYLOAD_SELECTION);
+        }
+        if (selectedUID != -1) {
+            notifyItemChanged(position, PAYLOAD_SELECTION);
+        }
+    }
 
-    private List<Camera> cameras;
+    /**
+     * Redraws the health badge of a camera after the health monitor checked it
+     * @param cameraUID UID of the camera that was checked
+     */
+    public void notifyHealthChanged(int cameraUID) {
+        List<Camera> cameras = getCurrentList();
+        for (int i = 0; i < cameras.size(); i++) {
+            if (cameras.get(i).getUID() == cameraUID) {
+                notifyItemChanged(i, PAYLOAD_STATUS);
+                return;
+            }
+        }
+    }
 
     /**
-     * Constructor for CameraCardAdaptor
-     * @param cameras List of camera needed to construct the view holders
+     * Get the position of the selected camera
+     * @return Position of the selected camera or NO_POSITION if nothing is selected
      */
-    public CameraCardAdapter(List<Camera> cameras){
-        this.cameras = cameras;
+    public int getSelectedPosition() {
+        List<Camera> cameras = getCurrentList();
+        for (int i = 0; i < cameras.size(); i++) {
+            if (cameras.get(i).getUID() == selectedUID) {
+                return i;
+            }
+        }
+        return RecyclerView.NO_POSITION;
     }
 
     /**
@@ -78,34 +157,66 @@ public class CameraCardAdapter extends RecyclerView.Adapter<CameraCardAdapter.Ca
      */
     @Override
     public void onBindViewHolder(@NonNull CameraCard holder, int position) {
-        holder.setCameraName(cameras.get(position).getPresentableName());
-        holder.setSelected(cameras.get(position).isSelected());
-        //TODO If we want to add a preview of the camera (an image) we need to do it here.
+        Camera camera = getItem(position);
+        holder.setCameraName(camera.getPresentableName());
+        holder.setSelected(camera.getUID() == selectedUID);
+        holder.setHealth(CameraHealthMonitor.getInstance().getHealth(camera.getUID()));
+        ThumbnailLoader.getInstance(holder.itemView.getContext()).load(camera, holder.thumbnail);
     }
 
     /**
-     * Method for getting the count of cameras
-     * @return Size of cameras list
+     * Method called when holder is bound with payloads, only the parts named by the payloads
+     * are updated. Without payloads the card is fully bound
+     * @param holder CameraCard holder that has been bound
+     * @param position Position of the CameraCard
+     * @param payloads Parts of the card that changed
      */
     @Override
-    public int getItemCount() {
-        return cameras.size();
+    public void onBindViewHolder(@NonNull CameraCard holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty()) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        Camera camera = getItem(position);
+        for (Object payload : payloads) {
+            if (payload == PAYLOAD_SELECTION) {
+                holder.setSelected(camera.getUID() == selectedUID);
+            } else if (payload == PAYLOAD_NAME) {
+                holder.setCameraName(camera.getPresentableName());
+            } else if (payload == PAYLOAD_STATUS) {
+                holder.setHealth(CameraHealthMonitor.getInstance().getHealth(camera.getUID()));
+            }
+        }
+    }
+
+    /**
+     * Method for getting the stable ID of a card
+     * @param position Position of the CameraCard
+     * @return UID of the camera on the card
+     */
+    @Override
+    public long getItemId(int position) {
+        return getItem(position).getUID();
     }
 
     class CameraCard extends RecyclerView.ViewHolder{
 
         TextView cameraName;
         FrameLayout selectedFrame;
+        ImageView thumbnail;
+        TextView status;
 
 
         /**
-         * Constructor for CameraCard, initializes name and the selected frame
+         * Constructor for CameraCard, initializes name, thumbnail, health badge and the selected frame
          * @param itemView View for the CameraCard
          */
         CameraCard(@NonNull View itemView) {
             super(itemView);
             cameraName = itemView.findViewById(R.id.card_camera_title);
             selectedFrame = itemView.findViewById(R.id.card_selected_frame);
+            thumbnail = itemView.findViewById(R.id.card_camera_thumbnail);
+            status = itemView.findViewById(R.id.card_camera_status);
         }
 
         /**
@@ -124,5 +235,24 @@ public class CameraCardAdapter extends RecyclerView.Adapter<CameraCardAdapter.Ca
             selectedFrame.setVisibility((selected) ? View.VISIBLE : View.INVISIBLE);
         }
 
+        /**
+         * Shows the online/offline badge with the latency of the last health check
+         * @param health Result of the last check, null hides the badge
+         */
+        void setHealth(CameraHealth health) {
+            if (health == null) {
+                status.setVisibility(View.GONE);
+                return;
+            }
+            if (health.isOnline()) {
+                status.setText(status.getContext().getString(R.string.card_status_online, (int) health.getLatency()));
+                status.setBackgroundResource(R.drawable.shape_status_online);
+            } else {
+                status.setText(R.string.card_status_offline);
+                status.setBackgroundResource(R.drawable.shape_status_offline);
+            }
+            status.setVisibility(View.VISIBLE);
+        }
+
     }
 }
\ No newline at end of file
@@ -0,0 +1,481 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.utils;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import com.vuzix.securityviewer.model.Camera;
+import com.vuzix.securityviewer.model.CameraHealth;
+import com.vuzix.securityviewer.onvif.GetSystemDateAndTimeRequest;
+import com.vuzix.securityviewer.onvif.OnvifClient;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import be.teletask.onvif.listeners.OnvifResponseListener;
+import be.teletask.onvif.models.OnvifDevice;
+import be.teletask.onvif.responses.OnvifResponse;
+
+/**
+ * Checks in the background whether the subscribed cameras are reachable, so the carousel can show
+ * that a camera is down before the user tries to open it. Every camera is checked on its own
+ * jittered schedule with a TCP connect to its ONVIF port, optionally followed by an
+ * unauthenticated GetSystemDateAndTime call. The connects are non-blocking and driven by a single
+ * selector on one BACKGROUND lane thread, which only runs while checks are in flight. At most
+ * MAX_CONCURRENT_PROBES checks run at once, so offline cameras waiting for their connect timeout
+ * don't hold up the others. Cameras subscribed under a DNS name are resolved in a separate task
+ * and handed back to the loop, so a slow lookup never stalls the selector.
+ */
+public class CameraHealthMonitor {
+
+    private static final String TAG = "CameraHealthMonitor";
+    private static final long PROBE_INTERVAL = 30 * 1000;
+    private static final float PROBE_JITTER = 0.25f;
+    private static final int CONNECT_TIMEOUT = 2000;
+    private static final int MAX_CONCURRENT_PROBES = 32;
+    private static final long SELECT_TIMEOUT = 50;
+
+    /**
+     * Callback for changes of the health of a camera, called on the main thread
+     */
+    public interface HealthListener {
+        /**
+         * Called when a check finished with a different result or a noticeably different latency
+         * @param cameraUID UID of the camera that was checked
+         * @param health Result of the check
+         */
+        void onHealthChanged(int cameraUID, CameraHealth health);
+    }
+
+    private static CameraHealthMonitor instance;
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Random random = new Random();
+    private final ConcurrentHashMap<Integer, CameraHealth> healthTable = new ConcurrentHashMap<>();
+    private final ArrayDeque<Camera> pendingProbes = new ArrayDeque<>();
+    private final ArrayDeque<Probe> resolvedProbes = new ArrayDeque<>();
+    private HealthListener healthListener;
+    private boolean soapCheckEnabled;
+    private int activeProbes;
+    private boolean probeLoopRunning;
+    private int generation;
+
+    /**
+     * Get the process-wide health monitor
+     * @return CameraHealthMonitor instance
+     */
+    public static synchronized CameraHealthMonitor getInstance() {
+        if (instance == null) {
+            instance = new CameraHealthMonitor();
+        }
+        return instance;
+    }
+
+    /**
+     * Starts checking a set of cameras, replacing the cameras watched before. Results of earlier
+     * checks stay in the status table. First checks are spread over one interval
+     * @param cameras Cameras to watch
+     * @param listener Listener for health changes
+     */
+    public synchronized void watch(List<Camera> cameras, HealthListener listener) {
+        stop();
+        healthListener = listener;
+        int currentGeneration = generation;
+        for (Camera camera : cameras) {
+            scheduleProbe(camera, currentGeneration, (long) (random.nextFloat() * PROBE_INTERVAL));
+        }
+    }
+
+    /**
+     * Stops all scheduled checks, checks already running finish but are not reported
+     */
+    public synchronized void stop() {
+        generation++;
+        handler.removeCallbacksAndMessages(null);
+        pendingProbes.clear();
+        healthListener = null;
+    }
+
+    /**
+     * Get the result of the last check of a camera
+     * @param cameraUID UID of the camera
+     * @return Health of the camera, null if it was not checked yet
+     */
+    public CameraHealth getHealth(int cameraUID) {
+        return healthTable.get(cameraUID);
+    }
+
+    /**
+     * Enables the GetSystemDateAndTime call after the TCP connect, which also catches cameras
+     * whose port is open but whose ONVIF service hangs
+     * @param soapCheckEnabled Send the SOAP call
+     */
+    public synchronized void setSoapCheckEnabled(boolean soapCheckEnabled) {
+        this.soapCheckEnabled = soapCheckEnabled;
+    }
+
+    /**
+     * Queues the next check of a camera
+     * @param camera Camera to check
+     * @param probeGeneration Generation the check belongs to
+     * @param delay Delay before the check is queued in ms
+     */
+    private void scheduleProbe(Camera camera, int probeGeneration, long delay) {
+        handler.postDelayed(() -> enqueueProbe(camera, probeGeneration), delay);
+    }
+
+    /**
+     * Adds a camera to the pending checks and starts as many checks as allowed
+     * @param camera Camera to check
+     * @param probeGeneration Generation the check belongs to
+     */
+    private synchronized void enqueueProbe(Camera camera, int probeGeneration) {
+        if (probeGeneration != generation) {
+            return;
+        }
+        pendingProbes.add(camera);
+        startPendingProbes();
+    }
+
+    /**
+     * Starts the probe loop on the BACKGROUND lane unless it is already running, the loop picks
+     * up pending and resolved checks itself
+     */
+    private synchronized void startPendingProbes() {
+        if (!probeLoopRunning && hasStartableProbes()) {
+            probeLoopRunning = true;
+            AppExecutors.getInstance().submit(AppExecutors.Lane.BACKGROUND, this::runProbes);
+        }
+    }
+
+    /**
+     * Whether the probe loop has a check to connect
+     * @return True if a check finished resolving or a pending check may start
+     */
+    private synchronized boolean hasStartableProbes() {
+        return !resolvedProbes.isEmpty() || (activeProbes < MAX_CONCURRENT_PROBES && !pendingProbes.isEmpty());
+    }
+
+    /**
+     * Takes the next check whose host name was resolved, or the next pending check if fewer than
+     * MAX_CONCURRENT_PROBES are running
+     * @return Check to start, null if none may start now
+     */
+    private synchronized Probe nextProbe() {
+        Probe resolvedProbe = resolvedProbes.poll();
+        if (resolvedProbe != null) {
+            // Already counted as active when it was taken the first time
+            return resolvedProbe;
+        }
+        if (activeProbes >= MAX_CONCURRENT_PROBES || pendingProbes.isEmpty()) {
+            return null;
+        }
+        activeProbes++;
+        return new Probe(pendingProbes.poll(), generation, soapCheckEnabled);
+    }
+
+    /**
+     * Ends the probe loop unless a check became startable in the meantime
+     * @return True if the loop may exit
+     */
+    private synchronized boolean finishProbeLoop() {
+        if (hasStartableProbes()) {
+            return false;
+        }
+        probeLoopRunning = false;
+        return true;
+    }
+
+    /**
+     * Connects to the cameras of pending checks with one selector until no connect is left in
+     * flight. Runs on the BACKGROUND lane
+     */
+    private void runProbes() {
+        Selector selector = null;
+        try {
+            selector = Selector.open();
+            while (true) {
+                Probe probe;
+                while ((probe = nextProbe()) != null) {
+                    startConnect(selector, probe);
+                }
+                if (selector.keys().isEmpty() && finishProbeLoop()) {
+                    return;
+                }
+
+                selector.select(SELECT_TIMEOUT);
+                Iterator<SelectionKey> selectedKeys = selector.selectedKeys().iterator();
+                while (selectedKeys.hasNext()) {
+                    SelectionKey key = selectedKeys.next();
+                    selectedKeys.remove();
+                    boolean reachable = false;
+                    try {
+                        reachable = ((SocketChannel) key.channel()).finishConnect();
+                    } catch (IOException e) {
+                        Log.d(TAG, ((Probe) key.attachment()).camera.getPresentableName() + " unreachable: "
+                                + e.getMessage());
+                    }
+                    closeProbe(key);
+                    onConnectFinished((Probe) key.attachment(), reachable);
+                }
+
+                long now = SystemClock.elapsedRealtime();
+                for (SelectionKey key : new HashSet<>(selector.keys())) {
+                    if (key.isValid() && now >= ((Probe) key.attachment()).startTime + CONNECT_TIMEOUT) {
+                        closeProbe(key);
+                        onConnectFinished((Probe) key.attachment(), false);
+                    }
+                }
+                // Cancelled keys leave the key set on the next select
+                selector.selectNow();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Health checks failed: " + e.getMessage());
+            if (selector != null) {
+                for (SelectionKey key : selector.keys()) {
+                    if (key.isValid()) {
+                        closeProbe(key);
+                        onConnectFinished((Probe) key.attachment(), false);
+                    }
+                }
+            }
+            synchronized (this) {
+                probeLoopRunning = false;
+            }
+        } finally {
+            if (selector != null) {
+                try {
+                    selector.close();
+                } catch (IOException e) {
+                    Log.d(TAG, "Could not close selector: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * Opens a non-blocking connection to the ONVIF port of a camera. A host name that still has
+     * to be resolved is handed to resolveAddress instead
+     * @param selector Selector driving the connects
+     * @param probe Check to start
+     */
+    private void startConnect(Selector selector, Probe probe) {
+        boolean resolved = probe.address != null;
+        InetSocketAddress address = resolved ? probe.address : getOnvifAddress(probe.camera.getHostName());
+        if (address == null || (resolved && address.isUnresolved())) {
+            onConnectFinished(probe, false);
+            return;
+        }
+        if (address.isUnresolved()) {
+            resolveAddress(probe, address);
+            return;
+        }
+        probe.startTime = SystemClock.elapsedRealtime();
+        SocketChannel channel = null;
+        try {
+            channel = SocketChannel.open();
+            channel.configureBlocking(false);
+            if (channel.connect(address)) {
+                channel.close();
+                onConnectFinished(probe, true);
+                return;
+            }
+            channel.register(selector, SelectionKey.OP_CONNECT, probe);
+        } catch (IOException e) {
+            Log.d(TAG, probe.camera.getPresentableName() + " unreachable: " + e.getMessage());
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException closeException) {
+                    Log.d(TAG, "Could not close probe: " + closeException.getMessage());
+                }
+            }
+            onConnectFinished(probe, false);
+        }
+    }
+
+    /**
+     * Resolves the host name of a check on the BACKGROUND lane and hands the check back to the
+     * probe loop, which fails it if the name didn't resolve
+     * @param probe Check to resolve
+     * @param unresolvedAddress Host name and port of the ONVIF service
+     */
+    private void resolveAddress(Probe probe, InetSocketAddress unresolvedAddress) {
+        AppExecutors.getInstance().submit(AppExecutors.Lane.BACKGROUND, () -> {
+            InetSocketAddress address = new InetSocketAddress(unresolvedAddress.getHostString(),
+                    unresolvedAddress.getPort());
+            synchronized (this) {
+                probe.address = address;
+                resolvedProbes.add(probe);
+                startPendingProbes();
+            }
+        });
+    }
+
+    /**
+     * Cancels a connect and closes its socket
+     * @param key Key of the connect
+     */
+    private void closeProbe(SelectionKey key) {
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException e) {
+            Log.d(TAG, "Could not close probe: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Finishes a check after its connect, or follows it with a GetSystemDateAndTime call if enabled
+     * @param probe Check whose connect ended
+     * @param reachable Whether the camera accepted the connection
+     */
+    private void onConnectFinished(Probe probe, boolean reachable) {
+        Camera camera = probe.camera;
+        if (!reachable || !probe.sendSoapCheck) {
+            onProbeFinished(camera, probe.generation, reachable, SystemClock.elapsedRealtime() - probe.startTime);
+            return;
+        }
+
+        OnvifClient.getInstance().sendOnvifRequest(new OnvifDevice(camera.getHostName()),
+                new GetSystemDateAndTimeRequest(), new OnvifResponseListener() {
+                    @Override
+                    public void onResponse(OnvifDevice onvifDevice, OnvifResponse onvifResponse) {
+                        onProbeFinished(camera, probe.generation, true, SystemClock.elapsedRealtime() - probe.startTime);
+                    }
+
+                    @Override
+                    public void onError(OnvifDevice onvifDevice, int errorCode, String errorMessage) {
+                        Log.d(TAG, camera.getPresentableName() + " ONVIF check failed: " + errorCode);
+                        onProbeFinished(camera, probe.generation, false, SystemClock.elapsedRealtime() - probe.startTime);
+                    }
+                });
+    }
+
+    /**
+     * Records the result of a check, reports it if it changed and schedules the next check
+     * @param camera Camera that was checked
+     * @param probeGeneration Generation the check belongs to
+     * @param online Whether the camera answered
+     * @param latency Time the check took in ms
+     */
+    private synchronized void onProbeFinished(Camera camera, int probeGeneration, boolean online, long latency) {
+        activeProbes--;
+        if (probeGeneration == generation) {
+            int cameraUID = camera.getUID();
+            CameraHealth health = new CameraHealth(online ? CameraHealth.Status.ONLINE : CameraHealth.Status.OFFLINE,
+                    online ? latency : -1, System.currentTimeMillis());
+            CameraHealth previousHealth = healthTable.put(cameraUID, health);
+            HealthListener listener = healthListener;
+            if (listener != null && hasChanged(previousHealth, health)) {
+                handler.post(() -> listener.onHealthChanged(cameraUID, health));
+            }
+            long jitter = (long) ((random.nextFloat() * 2 - 1) * PROBE_JITTER * PROBE_INTERVAL);
+            scheduleProbe(camera, probeGeneration, PROBE_INTERVAL + jitter);
+        }
+        startPendingProbes();
+    }
+
+    /**
+     * Decides whether a new result is worth redrawing a badge for, latency changes below 10 ms
+     * are ignored
+     * @param previousHealth Result of the previous check, may be null
+     * @param health Result of the new check
+     * @return True if the result changed
+     */
+    private boolean hasChanged(CameraHealth previousHealth, CameraHealth health) {
+        return previousHealth == null
+                || previousHealth.getStatus() != health.getStatus()
+                || Math.abs(previousHealth.getLatency() - health.getLatency()) >= 10;
+    }
+
+    /**
+     * Get the address of the ONVIF service of a camera without any DNS lookup, IP addresses are
+     * used as they are while names come back unresolved
+     * @param hostName Host name of the camera, with or without scheme and port
+     * @return Address of the ONVIF service or null if the host name can't be parsed
+     */
+    private InetSocketAddress getOnvifAddress(String hostName) {
+        if (hostName == null) {
+            return null;
+        }
+        Uri uri = Uri.parse(hostName.contains("://") ? hostName : "http://" + hostName);
+        if (uri.getHost() == null) {
+            return null;
+        }
+        int port = uri.getPort();
+        if (port == -1) {
+            port = "https".equalsIgnoreCase(uri.getScheme()) ? 443 : 80;
+        }
+        String host = uri.getHost();
+        if (host.matches("[0-9.]+") || host.contains(":")) {
+            return new InetSocketAddress(host, port);
+        }
+        return InetSocketAddress.createUnresolved(host, port);
+    }
+
+    /**
+     * Check of a camera in flight
+     */
+    private static class Probe {
+        final Camera camera;
+        final int generation;
+        final boolean sendSoapCheck;
+        InetSocketAddress address;
+        long startTime = SystemClock.elapsedRealtime();
+
+        /**
+         * Constructor for Probe
+         * @param camera Camera to check
+         * @param generation Generation the check belongs to
+         * @param sendSoapCheck Follow the connect with a GetSystemDateAndTime call
+         */
+        Probe(Camera camera, int generation, boolean sendSoapCheck) {
+            this.camera = camera;
+            this.generation = generation;
+            this.sendSoapCheck = sendSoapCheck;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.utils;
+
+import android.util.Log;
+
+/**
+ * Hands out decoder sessions to streams shown at the same time. The device only has a few
+ * hardware decoder sessions and software decoding is limited by the CPU, so once both are used up
+ * further streams get snapshots instead of live video.
+ */
+public class DecoderBudget {
+
+    private static final String TAG = "DecoderBudget";
+    private static final int MAX_HARDWARE_SESSIONS = 4;
+    public static final int DEFAULT_SOFTWARE_SESSIONS = 2;
+
+    /**
+     * How a stream is decoded
+     */
+    public enum DecoderMode {
+        HARDWARE,
+        SOFTWARE,
+        SNAPSHOT
+    }
+
+    private final int hardwareSessions;
+    private final int softwareSessions;
+    private int hardwareInUse = 0;
+    private int softwareInUse = 0;
+
+    /**
+     * Constructor for DecoderBudget
+     * @param hardwareSessions Number of streams that may use the hardware decoder
+     * @param softwareSessions Number of streams that may be decoded in software
+     */
+    public DecoderBudget(int hardwareSessions, int softwareSessions) {
+        this.hardwareSessions = hardwareSessions;
+        this.softwareSessions = softwareSessions;
+        Log.d(TAG, "Budget of " + hardwareSessions + " hardware and " + softwareSessions + " software sessions");
+    }
+
+    /**
+     * Creates a budget sized to the H.264 hardware decoder of this device
+     * @return Budget with the hardware sessions the device reports, at most MAX_HARDWARE_SESSIONS
+     */
+    public static DecoderBudget forDevice() {
+        int instances = DecoderPolicy.getInstance().getHardwareInstances(DecoderPolicy.MIME_TYPE_AVC);
+        return new DecoderBudget(Math.max(1, Math.min(instances, MAX_HARDWARE_SESSIONS)), DEFAULT_SOFTWARE_SESSIONS);
+    }
+
+    /**
+     * Takes the best decoder session still available
+     * @return Decoder mode the stream should use, SNAPSHOT once all sessions are taken
+     */
+    public synchronized DecoderMode acquire() {
+        if (hardwareInUse < hardwareSessions) {
+            hardwareInUse++;
+            return DecoderMode.HARDWARE;
+        } else if (softwareInUse < softwareSessions) {
+            softwareInUse++;
+            return DecoderMode.SOFTWARE;
+        }
+        return DecoderMode.SNAPSHOT;
+    }
+
+    /**
+     * Swaps a hardware session for a software one, for a stream the hardware decoder can't play
+     * @param decoderMode Mode previously returned by acquire()
+     * @return SOFTWARE if a software session was free, SNAPSHOT otherwise. Other modes are returned
+     * unchanged
+     */
+    public synchronized DecoderMode toSoftware(DecoderMode decoderMode) {
+        if (decoderMode != DecoderMode.HARDWARE) {
+            return decoderMode;
+        }
+        release(DecoderMode.HARDWARE);
+        if (softwareInUse < softwareSessions) {
+            softwareInUse++;
+            return DecoderMode.SOFTWARE;
+        }
+        return DecoderMode.SNAPSHOT;
+    }
+
+    /**
+     * Hands a session back once its stream stopped
+     * @param decoderMode Mode previously returned by acquire()
+     */
+    public synchronized void release(DecoderMode decoderMode) {
+        if (decoderMode == DecoderMode.HARDWARE && hardwareInUse > 0) {
+            hardwareInUse--;
+        } else if (decoderMode == DecoderMode.SOFTWARE && softwareInUse > 0) {
+            softwareInUse--;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.utils;
+
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Decides whether a stream is decoded by MediaCodec or in software. The hardware decoders of the
+ * device are queried once per process, after that the decoder path that actually produced frames
+ * for a camera is remembered in its stream cache entry so a camera the hardware decoder rejected is
+ * opened in software right away the next time.
+ */
+public class DecoderPolicy {
+
+    private static final String TAG = "DecoderPolicy";
+
+    public static final int DECODER_UNKNOWN = 0;
+    public static final int DECODER_HARDWARE = 1;
+    public static final int DECODER_SOFTWARE = 2;
+
+    public static final String MIME_TYPE_AVC = "video/avc";
+    private static final String MIME_TYPE_HEVC = "video/hevc";
+    private static final String MIME_TYPE_MPEG4 = "video/mp4v-es";
+
+    private static DecoderPolicy instance;
+
+    private final Map<String, Integer> hardwareInstances = new HashMap<>();
+
+    /**
+     * Constructor for DecoderPolicy, queries the hardware decoders of the device
+     */
+    private DecoderPolicy() {
+        try {
+            MediaCodecList codecList = new MediaCodecList(MediaCodecList.REGULAR_CODECS);
+            for (MediaCodecInfo codecInfo : codecList.getCodecInfos()) {
+                if (codecInfo.isEncoder() || isSoftwareCodec(codecInfo.getName())) {
+                    continue;
+                }
+                for (String type : codecInfo.getSupportedTypes()) {
+                    String mimeType = type.toLowerCase();
+                    int instances = codecInfo.getCapabilitiesForType(type).getMaxSupportedInstances();
+                    Log.d(TAG, codecInfo.getName() + " decodes " + mimeType + " with " + instances + " instances");
+                    Integer known = hardwareInstances.get(mimeType);
+                    hardwareInstances.put(mimeType, (known == null) ? instances : Math.max(known, instances));
+                }
+            }
+        } catch (RuntimeException e) {
+            Log.e(TAG, "Could not query decoders: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get the process-wide policy, the decoders are queried on first use so call it off the main
+     * thread the first time
+     * @return DecoderPolicy instance
+     */
+    public static synchronized DecoderPolicy getInstance() {
+        if (instance == null) {
+            instance = new DecoderPolicy();
+        }
+        return instance;
+    }
+
+    /**
+     * Decide how to decode a camera's stream
+     * @param decoderPath Decoder path remembered for the camera, DECODER_UNKNOWN if none
+     * @param encoding Encoding reported by the camera, null if unknown
+     * @return True to decode with MediaCodec, false to decode in software
+     */
+    public boolean useHardware(int decoderPath, String encoding) {
+        if (decoderPath == DECODER_SOFTWARE) {
+            return false;
+        } else if (decoderPath == DECODER_HARDWARE) {
+            return true;
+        }
+        String mimeType = toMimeType(encoding);
+        if (mimeType != null && !hardwareInstances.containsKey(mimeType)) {
+            Log.d(TAG, "No hardware decoder for " + encoding + ", decoding in software");
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Get how many instances of the hardware decoder for a format can run at once
+     * @param mimeType Video format
+     * @return Number of concurrent instances, 0 if there is no hardware decoder for the format
+     */
+    public int getHardwareInstances(String mimeType) {
+        Integer instances = hardwareInstances.get(mimeType);
+        return (instances != null) ? instances : 0;
+    }
+
+    /**
+     * Maps an ONVIF video encoding to its MIME type
+     * @param encoding Encoding reported by the camera
+     * @return MIME type, null for unknown encodings
+     */
+    private static String toMimeType(String encoding) {
+        if ("H264".equalsIgnoreCase(encoding)) {
+            return MIME_TYPE_AVC;
+        } else if ("H265".equalsIgnoreCase(encoding)) {
+            return MIME_TYPE_HEVC;
+        } else if ("MPEG4".equalsIgnoreCase(encoding)) {
+            return MIME_TYPE_MPEG4;
+        }
+        return null;
+    }
+
+    /**
+     * Check if a codec is one of the platform's software codecs
+     * @param codecName Name of the codec
+     * @return True for software codecs
+     */
+    private static boolean isSoftwareCodec(String codecName) {
+        String name = codecName.toLowerCase();
+        return name.startsWith("omx.google.") || name.startsWith("c2.android.") || name.contains(".sw.");
+    }
+}
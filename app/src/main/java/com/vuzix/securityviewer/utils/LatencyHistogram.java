@@ -0,0 +1,108 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.utils;
+
+/**
+ * Fixed bucket layout for the time-to-first-frame histograms. Buckets are fine grained where most
+ * opens land and coarse beyond, the last bucket catches everything slower than the last bound.
+ */
+public class LatencyHistogram {
+
+    private static final long[] BUCKET_UPPER_BOUNDS = {
+            250, 500, 750, 1000, 1250, 1500, 1750, 2000, 2500, 3000, 3500, 4000,
+            5000, 6000, 7000, 8000, 10000, 12500, 15000, 20000, 30000
+    };
+
+    /**
+     * Number of buckets including the overflow bucket
+     */
+    public static final int BUCKET_COUNT = BUCKET_UPPER_BOUNDS.length + 1;
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private long total = 0;
+
+    /**
+     * Get the bucket a latency falls into
+     * @param latency Latency in milliseconds
+     * @return Index of the bucket
+     */
+    public static int bucketFor(long latency) {
+        for (int i = 0; i < BUCKET_UPPER_BOUNDS.length; i++) {
+            if (latency <= BUCKET_UPPER_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_UPPER_BOUNDS.length;
+    }
+
+    /**
+     * Adds the count of a bucket to the histogram
+     * @param bucket Index of the bucket, out of range buckets are ignored
+     * @param count Number of samples in the bucket
+     */
+    public void add(int bucket, long count) {
+        if (bucket < 0 || bucket >= BUCKET_COUNT) {
+            return;
+        }
+        counts[bucket] += count;
+        total += count;
+    }
+
+    /**
+     * Get the number of samples in the histogram
+     * @return Number of samples
+     */
+    public long getTotal() {
+        return total;
+    }
+
+    /**
+     * Get a percentile of the histogram, reported as the upper bound of the bucket it falls into.
+     * The overflow bucket reports the last bound
+     * @param percentile Percentile between 0 and 100
+     * @return Latency in milliseconds, 0 if the histogram is empty
+     */
+    public long getPercentile(double percentile) {
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long cumulative = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            cumulative += counts[i];
+            if (cumulative >= rank) {
+                return BUCKET_UPPER_BOUNDS[Math.min(i, BUCKET_UPPER_BOUNDS.length - 1)];
+            }
+        }
+        return BUCKET_UPPER_BOUNDS[BUCKET_UPPER_BOUNDS.length - 1];
+    }
+}
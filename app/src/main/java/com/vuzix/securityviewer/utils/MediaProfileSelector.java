@@ -0,0 +1,150 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.utils;
+
+import com.vuzix.securityviewer.model.MediaProfileDetails;
+
+import java.util.List;
+
+/**
+ * Picks the media profile to stream. Cameras usually list their full resolution main stream first,
+ * which is far more than the display can show, so the cheapest profile that still fills the
+ * target size is preferred.
+ */
+public class MediaProfileSelector {
+
+    private final int targetWidth;
+    private final int targetHeight;
+
+    /**
+     * Constructor for MediaProfileSelector
+     * @param targetWidth Width in pixels the video will be shown at
+     * @param targetHeight Height in pixels the video will be shown at
+     */
+    public MediaProfileSelector(int targetWidth, int targetHeight) {
+        this.targetWidth = targetWidth;
+        this.targetHeight = targetHeight;
+    }
+
+    /**
+     * Select a profile from the list the camera returned
+     * @param profiles Profiles returned by the camera
+     * @param overrideToken Token the user pinned for this camera, null for automatic selection
+     * @return Selected profile, null if the list is empty
+     */
+    public MediaProfileDetails select(List<MediaProfileDetails> profiles, String overrideToken) {
+        if (profiles == null || profiles.isEmpty()) {
+            return null;
+        }
+
+        if (overrideToken != null) {
+            for (MediaProfileDetails profile : profiles) {
+                if (overrideToken.equals(profile.getToken())) {
+                    return profile;
+                }
+            }
+        }
+
+        MediaProfileDetails best = null;
+        for (MediaProfileDetails profile : profiles) {
+            if (profile.getEncoding() == null) {
+                continue; // Audio/metadata only profile
+            }
+            if (best == null || isBetter(profile, best)) {
+                best = profile;
+            }
+        }
+
+        return (best != null) ? best : profiles.get(0);
+    }
+
+    /**
+     * Compare two profiles. Profiles that fill the target are preferred and the smallest of those
+     * wins, otherwise the largest profile wins. Ties go to the cheaper codec, then lower bitrate.
+     * @param candidate Profile being considered
+     * @param current Best profile so far
+     * @return True if candidate should replace current
+     */
+    private boolean isBetter(MediaProfileDetails candidate, MediaProfileDetails current) {
+        boolean candidateKnown = candidate.getWidth() > 0 && candidate.getHeight() > 0;
+        boolean currentKnown = current.getWidth() > 0 && current.getHeight() > 0;
+        if (candidateKnown != currentKnown) {
+            return candidateKnown;
+        }
+
+        boolean candidateFills = fillsTarget(candidate);
+        boolean currentFills = fillsTarget(current);
+        if (candidateFills != currentFills) {
+            return candidateFills;
+        }
+
+        long candidatePixels = (long) candidate.getWidth() * candidate.getHeight();
+        long currentPixels = (long) current.getWidth() * current.getHeight();
+        if (candidatePixels != currentPixels) {
+            return candidateFills ? candidatePixels < currentPixels : candidatePixels > currentPixels;
+        }
+
+        int candidateCodec = codecCost(candidate.getEncoding());
+        int currentCodec = codecCost(current.getEncoding());
+        if (candidateCodec != currentCodec) {
+            return candidateCodec < currentCodec;
+        }
+
+        return candidate.getBitrateLimit() > 0
+                && (current.getBitrateLimit() == 0 || candidate.getBitrateLimit() < current.getBitrateLimit());
+    }
+
+    /**
+     * Check if a profile covers the target without being upscaled
+     * @param profile Profile to check
+     * @return True if both dimensions are at least the target size
+     */
+    private boolean fillsTarget(MediaProfileDetails profile) {
+        return profile.getWidth() >= targetWidth && profile.getHeight() >= targetHeight;
+    }
+
+    /**
+     * Relative cost of decoding a codec on the device, lower is cheaper
+     * @param encoding Encoding as reported by the camera
+     * @return Cost rank of the encoding
+     */
+    private int codecCost(String encoding) {
+        if ("H264".equalsIgnoreCase(encoding)) {
+            return 0;
+        } else if ("H265".equalsIgnoreCase(encoding)) {
+            return 1;
+        } else if ("MPEG4".equalsIgnoreCase(encoding)) {
+            return 2;
+        }
+        return 3;
+    }
+}
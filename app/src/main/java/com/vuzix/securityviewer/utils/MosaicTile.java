@@ -0,0 +1,334 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.utils;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.SurfaceView;
+import android.view.View;
+import android.widget.FrameLayout;
+import android.widget.ImageView;
+import android.widget.TextView;
+
+import com.vuzix.securityviewer.CamerasDatabase;
+import com.vuzix.securityviewer.R;
+import com.vuzix.securityviewer.model.Camera;
+import com.vuzix.securityviewer.model.StreamCache;
+import com.vuzix.securityviewer.onvif.SnapshotFetcher;
+import com.vuzix.securityviewer.onvif.StreamEndpointResolver;
+
+import org.videolan.libvlc.IVLCVout;
+import org.videolan.libvlc.Media;
+import org.videolan.libvlc.MediaPlayer;
+
+/**
+ * A single camera in the mosaic. Depending on the decoder session it was given the tile plays the
+ * camera profile that best fits the tile on its own pooled player, or refreshes a snapshot of it
+ * periodically. All methods have to be called on the main thread.
+ */
+public class MosaicTile implements MediaPlayer.EventListener {
+
+    private static final String TAG = "MosaicTile";
+    private static final long SNAPSHOT_INTERVAL = 5000;
+    private static final long RETRY_DELAY = 5000;
+
+    private final Camera camera;
+    private final View tileView;
+    private final SurfaceView surfaceView;
+    private final ImageView snapshotView;
+    private final View focusFrame;
+    private final CamerasDatabase database;
+    private final DecoderBudget decoderBudget;
+    private final TaskScope tasks;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable snapshotRunnable = this::fetchSnapshot;
+    private final Runnable retryRunnable = this::resolveStreamURL;
+
+    private DecoderBudget.DecoderMode decoderMode;
+    private MediaPlayer mediaPlayer;
+    private SnapshotFetcher snapshotFetcher;
+    private int width;
+    private int height;
+    private boolean suspended = false;
+    private boolean released = false;
+
+    /**
+     * Constructor for MosaicTile
+     * @param tileView Inflated layout_mosaic_tile view
+     * @param camera Camera shown in the tile
+     * @param database Database passed to the stream resolver
+     * @param decoderBudget Budget the tile's decoder session is taken from
+     * @param tasks Scope of the owning activity
+     */
+    public MosaicTile(View tileView, Camera camera, CamerasDatabase database, DecoderBudget decoderBudget,
+                      TaskScope tasks) {
+        this.tileView = tileView;
+        this.camera = camera;
+        this.database = database;
+        this.decoderBudget = decoderBudget;
+        this.tasks = tasks;
+        surfaceView = tileView.findViewById(R.id.sv_mosaic_tile);
+        snapshotView = tileView.findViewById(R.id.iv_mosaic_tile);
+        focusFrame = tileView.findViewById(R.id.mosaic_tile_focus);
+        TextView titleView = tileView.findViewById(R.id.tv_mosaic_tile);
+        titleView.setText(camera.getPresentableName());
+    }
+
+    /**
+     * Starts showing the camera
+     * @param decoderMode Decoder session handed out by the DecoderBudget
+     */
+    public void start(DecoderBudget.DecoderMode decoderMode) {
+        this.decoderMode = decoderMode;
+        Log.d(TAG, "Starting " + camera.getPresentableName() + " with " + decoderMode);
+        if (decoderMode == DecoderBudget.DecoderMode.SNAPSHOT) {
+            startSnapshots();
+        } else {
+            mediaPlayer = VLCPlayerPool.getInstance(tileView.getContext()).acquire();
+            mediaPlayer.setEventListener(this);
+            attachSurface();
+            resolveStreamURL();
+        }
+    }
+
+    /**
+     * Shows periodic snapshots instead of live video
+     */
+    private void startSnapshots() {
+        surfaceView.setVisibility(View.GONE);
+        snapshotView.setVisibility(View.VISIBLE);
+        snapshotFetcher = new SnapshotFetcher(camera.getHostName(), camera.getUsername(),
+                camera.getPassword(), null, new MediaProfileSelector(width, height), width, height);
+        fetchSnapshot();
+    }
+
+    /**
+     * Positions the tile inside the mosaic and resizes the video output to match
+     * @param left Left offset in pixels
+     * @param top Top offset in pixels
+     * @param width Width in pixels
+     * @param height Height in pixels
+     */
+    public void setBounds(int left, int top, int width, int height) {
+        this.width = width;
+        this.height = height;
+        FrameLayout.LayoutParams layoutParams = new FrameLayout.LayoutParams(width, height);
+        layoutParams.leftMargin = left;
+        layoutParams.topMargin = top;
+        tileView.setLayoutParams(layoutParams);
+        if (mediaPlayer != null && !suspended) {
+            mediaPlayer.getVLCVout().setWindowSize(width, height);
+        }
+    }
+
+    /**
+     * Shows or hides the focus frame
+     * @param focused True if the tile has the focus
+     */
+    public void setFocused(boolean focused) {
+        focusFrame.setVisibility(focused ? View.VISIBLE : View.INVISIBLE);
+    }
+
+    /**
+     * Hides the tile while another tile is full screen. The video track is disabled and the surface
+     * detached before the tile is hidden, the RTSP session keeps running
+     */
+    public void suspend() {
+        suspended = true;
+        handler.removeCallbacks(snapshotRunnable);
+        if (mediaPlayer != null) {
+            mediaPlayer.setVideoTrackEnabled(false);
+            mediaPlayer.getVLCVout().detachViews();
+        }
+        tileView.setVisibility(View.INVISIBLE);
+    }
+
+    /**
+     * Shows the tile again after suspend(), video is re-enabled on the existing session
+     */
+    public void resume() {
+        suspended = false;
+        tileView.setVisibility(View.VISIBLE);
+        if (mediaPlayer != null) {
+            attachSurface();
+            mediaPlayer.setVideoTrackEnabled(true);
+        } else if (snapshotFetcher != null) {
+            fetchSnapshot();
+        }
+    }
+
+    /**
+     * Stops the tile and hands its player and decoder session back
+     */
+    public void release() {
+        released = true;
+        handler.removeCallbacksAndMessages(null);
+        if (mediaPlayer != null) {
+            VLCPlayerPool.getInstance(tileView.getContext()).release(mediaPlayer);
+            mediaPlayer = null;
+        }
+        if (decoderMode != null) {
+            decoderBudget.release(decoderMode);
+        }
+    }
+
+    /**
+     * Attaches the tile's surface to its player
+     */
+    private void attachSurface() {
+        IVLCVout vlcVout = mediaPlayer.getVLCVout();
+        vlcVout.detachViews();
+        vlcVout.setVideoView(surfaceView);
+        vlcVout.setWindowSize(width, height);
+        vlcVout.attachViews();
+    }
+
+    /**
+     * Asks the camera for the stream URI of the profile that best fits the tile. The result is not
+     * cached since the stream cache holds the full screen profile, only the decoder path remembered
+     * for the camera is read from it
+     */
+    private void resolveStreamURL() {
+        StreamEndpointResolver resolver = new StreamEndpointResolver(database, -1, camera.getHostName(),
+                camera.getUsername(), camera.getPassword(), null, new MediaProfileSelector(width, height));
+        tasks.run(AppExecutors.Lane.INTERACTIVE, () -> {
+            StreamCache streamCache = database.getStreamCacheDAO().getStreamCache(camera.getUID());
+            int decoderPath = (streamCache != null) ? streamCache.getDecoderPath() : DecoderPolicy.DECODER_UNKNOWN;
+            resolver.resolve(new StreamEndpointResolver.StreamEndpointListener() {
+                @Override
+                public void onStreamEndpointResolved(String streamUri) {
+                    String encoding = resolver.getEncoding();
+                    tasks.postToMain(() -> play(streamUri, encoding, decoderPath));
+                }
+
+                @Override
+                public void onStreamEndpointFailed(int errorCode) {
+                    tasks.postToMain(() -> scheduleRetry());
+                }
+            });
+        });
+    }
+
+    /**
+     * Plays a stream without audio using the decoder the tile was given. If the camera has to be
+     * decoded in software a hardware session is swapped for a software one, or for snapshots once
+     * the software sessions are used up, so software streams stay within the budget
+     * @param streamUri Stream URI to play
+     * @param encoding Video encoding of the selected profile, null if unknown
+     * @param decoderPath Decoder path remembered for the camera, DECODER_UNKNOWN if none
+     */
+    private void play(String streamUri, String encoding, int decoderPath) {
+        if (released) {
+            return;
+        }
+        if (decoderMode == DecoderBudget.DecoderMode.HARDWARE
+                && !DecoderPolicy.getInstance().useHardware(decoderPath, encoding)) {
+            decoderMode = decoderBudget.toSoftware(decoderMode);
+            Log.d(TAG, camera.getPresentableName() + " can't use the hardware decoder, switching to " + decoderMode);
+            if (decoderMode == DecoderBudget.DecoderMode.SNAPSHOT) {
+                handler.removeCallbacks(retryRunnable);
+                VLCPlayerPool.getInstance(tileView.getContext()).release(mediaPlayer);
+                mediaPlayer = null;
+                startSnapshots();
+                return;
+            }
+        }
+        boolean hardwareDecoding = decoderMode == DecoderBudget.DecoderMode.HARDWARE;
+        Media media = VLCPlayerPool.getInstance(tileView.getContext()).createMedia(streamUri,
+                NetworkCachingController.DEFAULT_CACHING, camera.getUsername(), camera.getPassword(), hardwareDecoding);
+        media.addOption(":no-audio");
+        mediaPlayer.setMedia(media);
+        media.release();
+        mediaPlayer.play();
+    }
+
+    /**
+     * Resolves and plays the stream again after a delay
+     */
+    private void scheduleRetry() {
+        if (!released) {
+            handler.removeCallbacks(retryRunnable);
+            handler.postDelayed(retryRunnable, RETRY_DELAY);
+        }
+    }
+
+    /**
+     * Fetches the next snapshot, the following one is scheduled once it arrived
+     */
+    private void fetchSnapshot() {
+        if (released || suspended) {
+            return;
+        }
+        snapshotFetcher.fetch(new SnapshotFetcher.SnapshotListener() {
+            @Override
+            public void onSnapshot(Bitmap snapshot) {
+                tasks.postToMain(() -> {
+                    snapshotView.setImageBitmap(snapshot);
+                    scheduleSnapshot();
+                });
+            }
+
+            @Override
+            public void onSnapshotFailed(int errorCode) {
+                tasks.postToMain(() -> scheduleSnapshot());
+            }
+        });
+    }
+
+    /**
+     * Schedules the next snapshot unless the tile is hidden or stopped
+     */
+    private void scheduleSnapshot() {
+        if (!released && !suspended) {
+            handler.removeCallbacks(snapshotRunnable);
+            handler.postDelayed(snapshotRunnable, SNAPSHOT_INTERVAL);
+        }
+    }
+
+    /**
+     * VLC event listener, retries the stream when it stops
+     * @param event VLC event that has occurred
+     */
+    @Override
+    public void onEvent(MediaPlayer.Event event) {
+        if (event.type == MediaPlayer.Event.EncounteredError || event.type == MediaPlayer.Event.EndReached) {
+            Log.d(TAG, "Stream of " + camera.getPresentableName() + " stopped");
+            scheduleRetry();
+        }
+    }
+
+    public Camera getCamera() { return camera; }
+
+    public DecoderBudget.DecoderMode getDecoderMode() { return decoderMode; }
+}
@@ -0,0 +1,224 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.videolan.libvlc.Media;
+import org.videolan.libvlc.MediaPlayer;
+
+/**
+ * Picks the network caching of a stream from what VLC reports while it plays. Every
+ * SAMPLE_INTERVAL the media stats are read: lost pictures, demux discontinuities and rebuffering
+ * mean the buffer is too small, while the swing of the data read but not yet demuxed, converted
+ * to milliseconds of stream, gives an estimate of the network jitter the buffer has to absorb.
+ *
+ * VLC only reads the caching when a media is opened. Raised and lowered values alike are handed
+ * to the listener to be remembered for the next open, the running stream is never reopened.
+ */
+public class NetworkCachingController {
+
+    private static final String TAG = "NetworkCaching";
+
+    public static final int DEFAULT_CACHING = 1000;
+    public static final int MIN_CACHING = 200;
+    public static final int MAX_CACHING = 5000;
+
+    private static final long SAMPLE_INTERVAL = 2000;
+    private static final int JITTER_WINDOW = 10;
+    private static final int STABLE_SAMPLES = 15;
+    private static final int JITTER_HEADROOM = 3;
+    private static final int MIN_LOWER_STEP = 250;
+    private static final float RAISE_FACTOR = 1.5f;
+    private static final float LOWER_FACTOR = 0.75f;
+
+    /**
+     * Callback for caching changes, called on the main thread
+     */
+    public interface NetworkCachingListener {
+        /**
+         * Called when the caching was raised or lowered and should be remembered for the camera
+         * @param networkCaching New caching in milliseconds
+         */
+        void onNetworkCachingChanged(int networkCaching);
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable sampleRunnable = this::sample;
+    private final NetworkCachingListener listener;
+    private final long[] backlogs = new long[JITTER_WINDOW];
+
+    private MediaPlayer mediaPlayer;
+    private int networkCaching = DEFAULT_CACHING;
+    private int sampleCount;
+    private int stableSamples;
+    private long lastReadBytes;
+    private int lastLostPictures;
+    private int lastDiscontinuities;
+    private boolean rebuffered;
+
+    /**
+     * Constructor for NetworkCachingController
+     * @param listener Listener for caching changes
+     */
+    public NetworkCachingController(NetworkCachingListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Set the caching remembered for the camera, ignored if out of range
+     * @param networkCaching Caching in milliseconds, 0 if none was remembered
+     */
+    public void setNetworkCaching(int networkCaching) {
+        if (networkCaching >= MIN_CACHING && networkCaching <= MAX_CACHING) {
+            this.networkCaching = networkCaching;
+        }
+    }
+
+    /**
+     * Get the caching to open the stream with
+     * @return Caching in milliseconds
+     */
+    public int getNetworkCaching() {
+        return networkCaching;
+    }
+
+    /**
+     * Starts sampling a media that just started playing, any earlier sampling is discarded
+     * @param mediaPlayer Player playing the stream
+     */
+    public void start(MediaPlayer mediaPlayer) {
+        stop();
+        this.mediaPlayer = mediaPlayer;
+        sampleCount = 0;
+        stableSamples = 0;
+        lastReadBytes = 0;
+        lastLostPictures = 0;
+        lastDiscontinuities = 0;
+        rebuffered = false;
+        handler.postDelayed(sampleRunnable, SAMPLE_INTERVAL);
+    }
+
+    /**
+     * Stops sampling
+     */
+    public void stop() {
+        handler.removeCallbacks(sampleRunnable);
+        mediaPlayer = null;
+    }
+
+    /**
+     * Called with VLC buffering events, a drop below 100% while playing counts as a stall
+     * @param buffering Buffer fill in percent
+     */
+    public void onBuffering(float buffering) {
+        if (mediaPlayer != null && sampleCount > 0 && buffering < 100f) {
+            rebuffered = true;
+        }
+    }
+
+    /**
+     * Reads the media stats and raises or lowers the caching
+     */
+    private void sample() {
+        if (mediaPlayer == null) {
+            return;
+        }
+        Media media = mediaPlayer.getMedia();
+        if (media == null) {
+            return;
+        }
+        Media.Stats stats = media.getStats();
+        media.release();
+        handler.postDelayed(sampleRunnable, SAMPLE_INTERVAL);
+        if (stats == null) {
+            return;
+        }
+
+        int lostPictures = stats.lostPictures - lastLostPictures;
+        int discontinuities = stats.demuxDiscontinuity - lastDiscontinuities;
+        long readBytes = stats.readBytes - lastReadBytes;
+        long backlogBytes = Math.max(0, stats.readBytes - stats.demuxReadBytes);
+        lastLostPictures = stats.lostPictures;
+        lastDiscontinuities = stats.demuxDiscontinuity;
+        lastReadBytes = stats.readBytes;
+        if (sampleCount++ == 0) {
+            // First sample only sets the baseline
+            return;
+        }
+        // Time the data waiting for the demuxer lasts at the rate the stream currently arrives
+        backlogs[sampleCount % JITTER_WINDOW] = readBytes > 0
+                ? backlogBytes * SAMPLE_INTERVAL / readBytes : MAX_CACHING;
+
+        if (lostPictures > 0 || discontinuities > 0 || rebuffered) {
+            Log.d(TAG, "Unstable stream, lost pictures: " + lostPictures + " discontinuities: "
+                    + discontinuities + " rebuffered: " + rebuffered);
+            rebuffered = false;
+            stableSamples = 0;
+            int raised = Math.min(MAX_CACHING, Math.round(networkCaching * RAISE_FACTOR));
+            if (raised != networkCaching) {
+                networkCaching = raised;
+                listener.onNetworkCachingChanged(networkCaching);
+            }
+            return;
+        }
+
+        if (++stableSamples < STABLE_SAMPLES || sampleCount <= JITTER_WINDOW) {
+            return;
+        }
+        int target = Math.max(MIN_CACHING, MIN_CACHING + JITTER_HEADROOM * estimateJitter());
+        int lowered = Math.max(target, Math.round(networkCaching * LOWER_FACTOR));
+        if (networkCaching - lowered >= MIN_LOWER_STEP) {
+            Log.d(TAG, "Stable stream, lowering caching to " + lowered);
+            stableSamples = 0;
+            networkCaching = lowered;
+            listener.onNetworkCachingChanged(networkCaching);
+        }
+    }
+
+    /**
+     * Estimates the jitter from how far the demux backlog swings, a stream arriving on time keeps
+     * it level while late data drains it by the time the data was late
+     * @return Jitter in milliseconds
+     */
+    private int estimateJitter() {
+        long min = Long.MAX_VALUE;
+        long max = 0;
+        for (long backlog : backlogs) {
+            min = Math.min(min, backlog);
+            max = Math.max(max, backlog);
+        }
+        return (int) Math.min(MAX_CACHING, max - min);
+    }
+}
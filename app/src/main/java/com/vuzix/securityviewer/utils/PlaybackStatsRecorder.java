@@ -0,0 +1,227 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.vuzix.securityviewer.model.PlaybackSample;
+
+import org.videolan.libvlc.Media;
+import org.videolan.libvlc.MediaPlayer;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Records the playback statistics of a stream session. The media stats are read every
+ * SAMPLE_INTERVAL and turned into per-interval samples, the last MAX_SAMPLES of which are kept so a
+ * full shift can be exported as CSV. Network trouble shows as dropping input bitrate, corrupted
+ * packets and discontinuities, decoder trouble as lost pictures at a steady input bitrate.
+ */
+public class PlaybackStatsRecorder {
+
+    private static final String TAG = "PlaybackStats";
+    private static final long SAMPLE_INTERVAL = 5000;
+    private static final int MAX_SAMPLES = 720;
+    private static final String CSV_HEADER = "time,camera,input_kbps,demux_kbps,decoded_video,"
+            + "displayed_pictures,lost_pictures,demux_corrupted,demux_discontinuities,lost_audio_buffers";
+
+    /**
+     * Callback for new samples, called on the main thread
+     */
+    public interface PlaybackStatsListener {
+        /**
+         * Called with every new sample
+         * @param sample Sample of the interval that just ended
+         */
+        void onPlaybackSample(PlaybackSample sample);
+    }
+
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable sampleRunnable = this::sample;
+    private final ArrayDeque<PlaybackSample> samples = new ArrayDeque<>();
+    private PlaybackStatsListener listener;
+
+    private MediaPlayer mediaPlayer;
+    private String cameraName;
+    private Media.Stats lastStats;
+    private long lastSampleTime;
+
+    /**
+     * Set the listener for new samples
+     * @param listener Listener, null to stop listening
+     */
+    public void setListener(PlaybackStatsListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Starts sampling a media that just started playing, samples of earlier streams of the session
+     * are kept
+     * @param mediaPlayer Player playing the stream
+     * @param cameraName Name of the camera, written with every sample
+     */
+    public void start(MediaPlayer mediaPlayer, String cameraName) {
+        stop();
+        this.mediaPlayer = mediaPlayer;
+        this.cameraName = cameraName;
+        lastStats = null;
+        handler.postDelayed(sampleRunnable, SAMPLE_INTERVAL);
+    }
+
+    /**
+     * Stops sampling
+     */
+    public void stop() {
+        handler.removeCallbacks(sampleRunnable);
+        mediaPlayer = null;
+    }
+
+    /**
+     * Get a copy of the samples of this session
+     * @return Samples, oldest first
+     */
+    public List<PlaybackSample> getSamples() {
+        return new ArrayList<>(samples);
+    }
+
+    /**
+     * Reads the media stats and records the difference to the previous read
+     */
+    private void sample() {
+        if (mediaPlayer == null) {
+            return;
+        }
+        Media media = mediaPlayer.getMedia();
+        if (media == null) {
+            return;
+        }
+        Media.Stats stats = media.getStats();
+        media.release();
+        handler.postDelayed(sampleRunnable, SAMPLE_INTERVAL);
+        if (stats == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        Media.Stats previous = lastStats;
+        long interval = now - lastSampleTime;
+        lastStats = stats;
+        lastSampleTime = now;
+        if (previous == null || interval <= 0) {
+            // First read only sets the baseline
+            return;
+        }
+
+        PlaybackSample sample = new PlaybackSample(now, cameraName,
+                toKbps(stats.readBytes - previous.readBytes, interval),
+                toKbps(stats.demuxReadBytes - previous.demuxReadBytes, interval),
+                stats.decodedVideo - previous.decodedVideo,
+                stats.displayedPictures - previous.displayedPictures,
+                stats.lostPictures - previous.lostPictures,
+                stats.demuxCorrupted - previous.demuxCorrupted,
+                stats.demuxDiscontinuity - previous.demuxDiscontinuity,
+                stats.lostAbuffers - previous.lostAbuffers);
+        if (samples.size() >= MAX_SAMPLES) {
+            samples.poll();
+        }
+        samples.add(sample);
+        if (listener != null) {
+            listener.onPlaybackSample(sample);
+        }
+    }
+
+    /**
+     * Writes the samples as CSV, one row per sample with a header row
+     * @param samples Samples to write, see getSamples()
+     * @param directory Directory to write the file to
+     * @return Written file
+     * @throws IOException If the file could not be written
+     */
+    public static File exportCsv(List<PlaybackSample> samples, File directory) throws IOException {
+        SimpleDateFormat fileDateFormat = new SimpleDateFormat("yyyyMMdd_HHmmss", Locale.US);
+        SimpleDateFormat rowDateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm:ss", Locale.US);
+        File file = new File(directory, "playback_stats_" + fileDateFormat.format(new Date()) + ".csv");
+        try (PrintWriter writer = new PrintWriter(new FileWriter(file))) {
+            writer.println(CSV_HEADER);
+            for (PlaybackSample sample : samples) {
+                writer.println(rowDateFormat.format(new Date(sample.getTimestamp())) + ","
+                        + escapeCsv(sample.getCameraName()) + ","
+                        + sample.getInputBitrate() + ","
+                        + sample.getDemuxBitrate() + ","
+                        + sample.getDecodedVideo() + ","
+                        + sample.getDisplayedPictures() + ","
+                        + sample.getLostPictures() + ","
+                        + sample.getDemuxCorrupted() + ","
+                        + sample.getDemuxDiscontinuities() + ","
+                        + sample.getLostAudioBuffers());
+            }
+        }
+        Log.d(TAG, "Exported " + samples.size() + " samples to " + file.getAbsolutePath());
+        return file;
+    }
+
+    /**
+     * Converts bytes read during an interval to a bitrate
+     * @param bytes Bytes read
+     * @param interval Interval in milliseconds
+     * @return Bitrate in kbit/s
+     */
+    private static int toKbps(long bytes, long interval) {
+        return (int) (Math.max(0, bytes) * 8 / interval);
+    }
+
+    /**
+     * Quotes a CSV field if it contains separators or quotes
+     * @param value Field value
+     * @return Value safe to write as a CSV field
+     */
+    private static String escapeCsv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.contains(",") || value.contains("\"") || value.contains("\n")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+        return value;
+    }
+}
@@ -0,0 +1,83 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.utils;
+
+import java.util.Random;
+
+/**
+ * Exponential backoff with jitter for reconnecting to a stream. The delay doubles with every
+ * attempt up to MAX_DELAY, and a random half of it is dropped so several glasses reconnecting to the
+ * same camera after an outage do not all hit it at once.
+ */
+public class ReconnectBackoff {
+
+    private static final long BASE_DELAY = 500;
+    private static final long MAX_DELAY = 30000;
+    private static final int MAX_SHIFT = 16;
+
+    private final Random random = new Random();
+    private int attempt = 0;
+
+    /**
+     * Get the delay before the next attempt and count the attempt
+     * @return Delay in milliseconds
+     */
+    public long nextDelay() {
+        long ceiling = Math.min(MAX_DELAY, BASE_DELAY << Math.min(attempt, MAX_SHIFT));
+        attempt++;
+        long half = ceiling / 2;
+        return half + (long) (random.nextDouble() * half);
+    }
+
+    /**
+     * Get the number of attempts made since the last reset
+     * @return Number of attempts
+     */
+    public int getAttempt() {
+        return attempt;
+    }
+
+    /**
+     * Get whether a reconnect is in progress
+     * @return True if an attempt was made since the last reset
+     */
+    public boolean isReconnecting() {
+        return attempt > 0;
+    }
+
+    /**
+     * Starts over from the base delay, called once the stream plays again
+     */
+    public void reset() {
+        attempt = 0;
+    }
+}
@@ -0,0 +1,108 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.utils;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+/**
+ * Timestamps the stages of opening a stream, from Camera.openStream to the first picture VLC
+ * shows. Each stage is recorded the first time it is reached, the trace is finished once the first
+ * frame is out. Stages may be marked from any thread.
+ */
+public class StartupTrace {
+
+    private static final String TAG = "StartupTrace";
+
+    /**
+     * Stages of opening a stream in the order they are normally reached
+     */
+    public enum Stage {
+        OPEN_STREAM,
+        RESOLVE_STARTED,
+        PROFILES_RECEIVED,
+        STREAM_URI_RECEIVED,
+        PLAY,
+        VLC_OPENING,
+        VLC_PLAYING,
+        FIRST_FRAME
+    }
+
+    private final String cameraName;
+    private final long[] stageTimes = new long[Stage.values().length];
+    private boolean finished = false;
+
+    /**
+     * Constructor for StartupTrace
+     * @param cameraName Name of the camera, used for logging
+     * @param openTime SystemClock.elapsedRealtime() when Camera.openStream was called, 0 if
+     *                 unknown in which case the trace starts now
+     */
+    public StartupTrace(String cameraName, long openTime) {
+        this.cameraName = cameraName;
+        stageTimes[Stage.OPEN_STREAM.ordinal()] = (openTime > 0) ? openTime : SystemClock.elapsedRealtime();
+    }
+
+    /**
+     * Records the time a stage was reached, later marks of the same stage are ignored
+     * @param stage Stage reached
+     */
+    public synchronized void mark(Stage stage) {
+        if (!finished && stageTimes[stage.ordinal()] == 0) {
+            stageTimes[stage.ordinal()] = SystemClock.elapsedRealtime();
+        }
+    }
+
+    /**
+     * Marks the first frame and finishes the trace, logging the time spent in each stage
+     * @return Time to first frame in milliseconds, -1 if the trace was already finished
+     */
+    public synchronized long finish() {
+        if (finished) {
+            return -1;
+        }
+        mark(Stage.FIRST_FRAME);
+        finished = true;
+
+        long openTime = stageTimes[Stage.OPEN_STREAM.ordinal()];
+        StringBuilder breakdown = new StringBuilder(cameraName).append(" first frame after ");
+        long timeToFirstFrame = stageTimes[Stage.FIRST_FRAME.ordinal()] - openTime;
+        breakdown.append(timeToFirstFrame).append("ms:");
+        for (Stage stage : Stage.values()) {
+            if (stageTimes[stage.ordinal()] != 0) {
+                breakdown.append(' ').append(stage).append('=').append(stageTimes[stage.ordinal()] - openTime);
+            }
+        }
+        Log.d(TAG, breakdown.toString());
+        return timeToFirstFrame;
+    }
+}
@@ -0,0 +1,202 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.utils;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+
+import com.vuzix.securityviewer.CamerasDatabase;
+import com.vuzix.securityviewer.model.Camera;
+import com.vuzix.securityviewer.model.StreamCache;
+import com.vuzix.securityviewer.onvif.StreamEndpointResolver;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Resolves the stream URIs of the subscribed cameras ahead of time so StreamActivity can start
+ * playing from the stream cache as soon as a camera is opened. At most MAX_IN_FLIGHT cameras are
+ * queried at once, the selected camera and its neighbours in the carousel go first. Resolving is
+ * asynchronous, so no lane thread is held while a camera answers
+ */
+public class StreamPrefetcher {
+
+    private static final String TAG = "StreamPrefetcher";
+    private static final int MAX_IN_FLIGHT = 2;
+    private static final long RESOLVE_TIMEOUT = 15000;
+    private static final long FRESH_PERIOD = 5 * 60 * 1000;
+
+    private static StreamPrefetcher instance;
+
+    private final CamerasDatabase database;
+    private final MediaProfileSelector profileSelector;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Deque<Camera> pendingCameras = new ArrayDeque<>();
+    private int inFlight;
+
+    /**
+     * Constructor for StreamPrefetcher
+     * @param context Application context
+     */
+    private StreamPrefetcher(Context context) {
+        database = CamerasDatabase.getInstance(context);
+        DisplayMetrics displayMetrics = context.getResources().getDisplayMetrics();
+        profileSelector = new MediaProfileSelector(displayMetrics.widthPixels, displayMetrics.heightPixels);
+    }
+
+    /**
+     * Get the process-wide prefetcher
+     * @param context Any context, the application context is retained
+     * @return StreamPrefetcher instance
+     */
+    public static synchronized StreamPrefetcher getInstance(Context context) {
+        if (instance == null) {
+            instance = new StreamPrefetcher(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Queues every camera for prefetching, replacing whatever was still waiting from a previous
+     * call. Cameras already being resolved are left to finish
+     * @param cameras Subscribed cameras in carousel order
+     * @param selectedIndex Index of the selected camera
+     */
+    public synchronized void prefetch(List<Camera> cameras, int selectedIndex) {
+        pendingCameras.clear();
+        pendingCameras.addAll(orderBySelection(cameras, selectedIndex));
+        startPendingPrefetches();
+    }
+
+    /**
+     * Drops every camera still waiting to be prefetched
+     */
+    public synchronized void cancel() {
+        pendingCameras.clear();
+    }
+
+    /**
+     * Starts prefetching waiting cameras until MAX_IN_FLIGHT are being resolved
+     */
+    private synchronized void startPendingPrefetches() {
+        while (inFlight < MAX_IN_FLIGHT && !pendingCameras.isEmpty()) {
+            Camera camera = pendingCameras.poll();
+            inFlight++;
+            AppExecutors.getInstance().submit(AppExecutors.Lane.IO, () -> prefetchCamera(camera));
+        }
+    }
+
+    /**
+     * Releases the slot of a camera that was resolved, failed or timed out
+     */
+    private synchronized void onPrefetchEnded() {
+        inFlight--;
+        startPendingPrefetches();
+    }
+    /**
+     * Orders cameras by their distance to the selected camera, alternating between both sides
+     * @param cameras Cameras in carousel order
+     * @param selectedIndex Index of the selected camera
+     * @return Cameras in prefetch order
+     */
+    private static List<Camera> orderBySelection(List<Camera> cameras, int selectedIndex) {
+        List<Camera> ordered = new ArrayList<>(cameras.size());
+        if (cameras.isEmpty()) {
+            return ordered;
+        }
+        int selected = Math.max(0, Math.min(selectedIndex, cameras.size() - 1));
+        ordered.add(cameras.get(selected));
+        for (int distance = 1; ordered.size() < cameras.size(); distance++) {
+            if (selected + distance < cameras.size()) {
+                ordered.add(cameras.get(selected + distance));
+            }
+            if (selected - distance >= 0) {
+                ordered.add(cameras.get(selected - distance));
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * Resolves the stream URI of a camera unless it was resolved recently. The slot is released
+     * by the first of the resolver's answer and RESOLVE_TIMEOUT
+     * @param camera Camera to prefetch
+     */
+    private void prefetchCamera(Camera camera) {
+        StreamCache streamCache = database.getStreamCacheDAO().getStreamCache(camera.getUID());
+        if (streamCache != null && streamCache.getStreamUri() != null
+                && System.currentTimeMillis() - streamCache.getResolvedAt() < FRESH_PERIOD) {
+            onPrefetchEnded();
+            return;
+        }
+
+        AtomicBoolean ended = new AtomicBoolean();
+        Runnable timeout = () -> {
+            if (ended.compareAndSet(false, true)) {
+                Log.d(TAG, "Timed out prefetching stream of " + camera.getPresentableName());
+                onPrefetchEnded();
+            }
+        };
+        handler.postDelayed(timeout, RESOLVE_TIMEOUT);
+
+        StreamEndpointResolver resolver = new StreamEndpointResolver(database, camera.getUID(),
+                camera.getHostName(), camera.getUsername(), camera.getPassword(),
+                camera.getStreamProfileToken(), profileSelector);
+        resolver.resolve(new StreamEndpointResolver.StreamEndpointListener() {
+            @Override
+            public void onStreamEndpointResolved(String streamUri) {
+                Log.d(TAG, "Prefetched stream of " + camera.getPresentableName());
+                end();
+            }
+
+            @Override
+            public void onStreamEndpointFailed(int errorCode) {
+                Log.d(TAG, "Could not prefetch stream of " + camera.getPresentableName() + ": " + errorCode);
+                end();
+            }
+
+            private void end() {
+                if (ended.compareAndSet(false, true)) {
+                    handler.removeCallbacks(timeout);
+                    onPrefetchEnded();
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,104 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.utils;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Future;
+
+/**
+ * Work owned by a single activity. Everything submitted through a scope is cancelled together when
+ * the activity is destroyed, and results posted back to the main thread after that are dropped.
+ */
+public class TaskScope {
+
+    private final AppExecutors appExecutors = AppExecutors.getInstance();
+    private final Set<Future<?>> futures = new HashSet<>();
+    private volatile boolean cancelled = false;
+
+    /**
+     * Queues work on a lane, ignored once the scope is cancelled
+     * @param lane Lane to run the work on
+     * @param task Work to run
+     */
+    public void run(AppExecutors.Lane lane, Runnable task) {
+        synchronized (futures) {
+            if (cancelled) {
+                return;
+            }
+            Future<?>[] future = new Future<?>[1];
+            future[0] = appExecutors.submit(lane, () -> {
+                try {
+                    task.run();
+                } finally {
+                    synchronized (futures) {
+                        futures.remove(future[0]);
+                    }
+                }
+            });
+            futures.add(future[0]);
+        }
+    }
+
+    /**
+     * Posts a result to the main thread, dropped if the scope was cancelled in the meantime
+     * @param task Work to run on the main thread
+     */
+    public void postToMain(Runnable task) {
+        appExecutors.postToMain(() -> {
+            if (!cancelled) {
+                task.run();
+            }
+        });
+    }
+
+    /**
+     * Cancels queued work, interrupts running work and drops pending main thread results
+     */
+    public void cancel() {
+        synchronized (futures) {
+            cancelled = true;
+            for (Future<?> future : futures) {
+                future.cancel(true);
+            }
+            futures.clear();
+        }
+    }
+
+    /**
+     * Get whether the scope was cancelled
+     * @return True once cancel was called
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
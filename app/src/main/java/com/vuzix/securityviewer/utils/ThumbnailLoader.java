@@ -0,0 +1,301 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.utils;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.util.DisplayMetrics;
+import android.util.Log;
+import android.util.LruCache;
+import android.widget.ImageView;
+
+import com.vuzix.securityviewer.model.Camera;
+import com.vuzix.securityviewer.onvif.SnapshotFetcher;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads camera thumbnails for the home screen cards. Thumbnails are snapshots taken through ONVIF
+ * GetSnapshotUri, downsampled to card size and kept in a memory cache bounded in bytes on top of a
+ * disk cache that survives restarts. A camera is asked for a new snapshot at most once per
+ * REFRESH_INTERVAL no matter how often its card is bound, or right away after its host or
+ * credentials changed.
+ */
+public class ThumbnailLoader {
+
+    private static final String TAG = "ThumbnailLoader";
+    private static final long REFRESH_INTERVAL = 60 * 1000;
+    private static final long MAX_DISK_BYTES = 5 * 1024 * 1024;
+    private static final int MEMORY_FRACTION = 16;
+    private static final int THUMBNAIL_WIDTH_DP = 128;
+    private static final int THUMBNAIL_HEIGHT_DP = 180;
+    private static final int JPEG_QUALITY = 80;
+    private static final String DISK_DIRECTORY = "thumbnails";
+
+    private static ThumbnailLoader instance;
+
+    private final File diskDirectory;
+    private final int thumbnailWidth;
+    private final int thumbnailHeight;
+    private final LruCache<Integer, Bitmap> memoryCache;
+    private final Map<Integer, SnapshotFetcher> snapshotFetchers = new HashMap<>();
+    private final Map<Integer, String> fetcherKeys = new HashMap<>();
+    private final Map<Integer, Long> fetchedAt = new HashMap<>();
+    private final Set<Integer> fetchesInFlight = new HashSet<>();
+
+    /**
+     * Constructor for ThumbnailLoader
+     * @param context Application context
+     */
+    private ThumbnailLoader(Context context) {
+        diskDirectory = new File(context.getCacheDir(), DISK_DIRECTORY);
+        DisplayMetrics displayMetrics = context.getResources().getDisplayMetrics();
+        thumbnailWidth = Math.round(THUMBNAIL_WIDTH_DP * displayMetrics.density);
+        thumbnailHeight = Math.round(THUMBNAIL_HEIGHT_DP * displayMetrics.density);
+        memoryCache = new LruCache<Integer, Bitmap>((int) (Runtime.getRuntime().maxMemory() / MEMORY_FRACTION)) {
+            @Override
+            protected int sizeOf(Integer cameraUID, Bitmap thumbnail) {
+                return thumbnail.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Get the process-wide thumbnail loader
+     * @param context Any context, the application context is retained
+     * @return ThumbnailLoader instance
+     */
+    public static synchronized ThumbnailLoader getInstance(Context context) {
+        if (instance == null) {
+            instance = new ThumbnailLoader(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Shows the thumbnail of a camera in an image view. The memory cache is used right away, the
+     * disk cache is read on the IO lane and a new snapshot is fetched if the last one is older than
+     * REFRESH_INTERVAL. The view is only updated if it still shows the same camera by then. Has to
+     * be called on the main thread
+     * @param camera Camera to show
+     * @param imageView View to show the thumbnail in, recycled views are fine
+     */
+    public void load(Camera camera, ImageView imageView) {
+        int cameraUID = camera.getUID();
+        imageView.setTag(cameraUID);
+        Bitmap thumbnail = memoryCache.get(cameraUID);
+        imageView.setImageBitmap(thumbnail);
+        if (thumbnail == null) {
+            AppExecutors.getInstance().submit(AppExecutors.Lane.IO, () -> loadFromDisk(camera, imageView));
+        } else {
+            refreshIfStale(camera, imageView);
+        }
+    }
+
+    /**
+     * Forgets everything cached for a deleted camera, Room may hand its UID to the next camera.
+     * Deletes the disk file, so call it off the main thread
+     * @param cameraUID UID of the deleted camera
+     */
+    public void remove(int cameraUID) {
+        synchronized (this) {
+            snapshotFetchers.remove(cameraUID);
+            fetcherKeys.remove(cameraUID);
+            fetchedAt.remove(cameraUID);
+        }
+        memoryCache.remove(cameraUID);
+        File file = getDiskFile(cameraUID);
+        if (file.exists() && !file.delete()) {
+            Log.d(TAG, "Could not delete " + file.getName());
+        }
+    }
+
+    /**
+     * Reads the thumbnail of a camera from the disk cache, runs on the IO lane
+     * @param camera Camera to load
+     * @param imageView View waiting for the thumbnail
+     */
+    private void loadFromDisk(Camera camera, ImageView imageView) {
+        int cameraUID = camera.getUID();
+        File file = getDiskFile(cameraUID);
+        Bitmap thumbnail = null;
+        if (file.exists()) {
+            thumbnail = BitmapFactory.decodeFile(file.getAbsolutePath());
+            synchronized (this) {
+                if (!fetchedAt.containsKey(cameraUID)) {
+                    fetchedAt.put(cameraUID, file.lastModified());
+                }
+            }
+        }
+        Bitmap diskThumbnail = thumbnail;
+        AppExecutors.getInstance().postToMain(() -> {
+            if (diskThumbnail != null && memoryCache.get(cameraUID) == null) {
+                memoryCache.put(cameraUID, diskThumbnail);
+                show(cameraUID, diskThumbnail, imageView);
+            }
+            refreshIfStale(camera, imageView);
+        });
+    }
+
+    /**
+     * Fetches a new snapshot unless the camera was asked recently or a fetch is in flight. A camera
+     * whose host or credentials changed gets a new fetcher and is asked right away
+     * @param camera Camera to refresh
+     * @param imageView View waiting for the thumbnail
+     */
+    private synchronized void refreshIfStale(Camera camera, ImageView imageView) {
+        int cameraUID = camera.getUID();
+        String fetcherKey = camera.getHostName() + "\n" + camera.getUsername() + "\n" + camera.getPassword();
+        if (!fetcherKey.equals(fetcherKeys.get(cameraUID))) {
+            if (snapshotFetchers.remove(cameraUID) != null) {
+                fetchedAt.remove(cameraUID);
+            }
+            fetcherKeys.put(cameraUID, fetcherKey);
+        }
+        Long lastFetch = fetchedAt.get(cameraUID);
+        if (fetchesInFlight.contains(cameraUID)
+                || (lastFetch != null && System.currentTimeMillis() - lastFetch < REFRESH_INTERVAL)) {
+            return;
+        }
+        fetchesInFlight.add(cameraUID);
+        fetchedAt.put(cameraUID, System.currentTimeMillis());
+
+        SnapshotFetcher snapshotFetcher = snapshotFetchers.get(cameraUID);
+        if (snapshotFetcher == null) {
+            snapshotFetcher = new SnapshotFetcher(camera.getHostName(), camera.getUsername(), camera.getPassword(),
+                    null, new MediaProfileSelector(thumbnailWidth, thumbnailHeight), thumbnailWidth, thumbnailHeight);
+            snapshotFetchers.put(cameraUID, snapshotFetcher);
+        }
+        SnapshotFetcher fetcher = snapshotFetcher;
+        fetcher.fetch(new SnapshotFetcher.SnapshotListener() {
+            @Override
+            public void onSnapshot(Bitmap snapshot) {
+                if (!onFetchFinished(cameraUID, fetcher)) {
+                    // The camera was deleted or edited while the snapshot was taken
+                    return;
+                }
+                AppExecutors.getInstance().submit(AppExecutors.Lane.IO, () -> saveToDisk(cameraUID, snapshot));
+                AppExecutors.getInstance().postToMain(() -> {
+                    memoryCache.put(cameraUID, snapshot);
+                    show(cameraUID, snapshot, imageView);
+                });
+            }
+
+            @Override
+            public void onSnapshotFailed(int errorCode) {
+                Log.d(TAG, "No thumbnail for " + camera.getPresentableName() + ": " + errorCode);
+                onFetchFinished(cameraUID, fetcher);
+            }
+        });
+    }
+
+    /**
+     * Marks the fetch of a camera as done
+     * @param cameraUID UID of the camera
+     * @param fetcher Fetcher that took the snapshot
+     * @return False if the fetcher was replaced or removed in the meantime
+     */
+    private synchronized boolean onFetchFinished(int cameraUID, SnapshotFetcher fetcher) {
+        fetchesInFlight.remove(cameraUID);
+        return snapshotFetchers.get(cameraUID) == fetcher;
+    }
+
+    /**
+     * Shows a thumbnail if the view was not recycled for another camera in the meantime
+     * @param cameraUID UID of the camera the thumbnail belongs to
+     * @param thumbnail Thumbnail to show
+     * @param imageView View to show it in
+     */
+    private void show(int cameraUID, Bitmap thumbnail, ImageView imageView) {
+        if (Integer.valueOf(cameraUID).equals(imageView.getTag())) {
+            imageView.setImageBitmap(thumbnail);
+        }
+    }
+
+    /**
+     * Writes a thumbnail to the disk cache and trims the cache, runs on the IO lane
+     * @param cameraUID UID of the camera
+     * @param thumbnail Thumbnail to write
+     */
+    private void saveToDisk(int cameraUID, Bitmap thumbnail) {
+        if (!diskDirectory.exists() && !diskDirectory.mkdirs()) {
+            return;
+        }
+        try (FileOutputStream outputStream = new FileOutputStream(getDiskFile(cameraUID))) {
+            thumbnail.compress(Bitmap.CompressFormat.JPEG, JPEG_QUALITY, outputStream);
+        } catch (IOException e) {
+            Log.e(TAG, "Could not store thumbnail: " + e.getMessage());
+        }
+        trimDiskCache();
+    }
+
+    /**
+     * Deletes the least recently written thumbnails until the disk cache fits MAX_DISK_BYTES
+     */
+    private void trimDiskCache() {
+        File[] files = diskDirectory.listFiles();
+        if (files == null) {
+            return;
+        }
+        long totalBytes = 0;
+        for (File file : files) {
+            totalBytes += file.length();
+        }
+        Arrays.sort(files, (first, second) -> Long.compare(first.lastModified(), second.lastModified()));
+        for (File file : files) {
+            if (totalBytes <= MAX_DISK_BYTES) {
+                break;
+            }
+            totalBytes -= file.length();
+            if (!file.delete()) {
+                Log.d(TAG, "Could not delete " + file.getName());
+            }
+        }
+    }
+
+    /**
+     * Get the disk cache file of a camera
+     * @param cameraUID UID of the camera
+     * @return Thumbnail file, may not exist
+     */
+    private File getDiskFile(int cameraUID) {
+        return new File(diskDirectory, cameraUID + ".jpg");
+    }
+}
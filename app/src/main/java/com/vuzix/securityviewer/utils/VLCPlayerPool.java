@@ -0,0 +1,195 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.utils;
+
+import android.content.Context;
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import org.videolan.libvlc.IVLCVout;
+import org.videolan.libvlc.LibVLC;
+import org.videolan.libvlc.Media;
+import org.videolan.libvlc.MediaPlayer;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+
+/**
+ * Process-wide LibVLC instance with a small pool of MediaPlayers. LibVLC is initialized once per
+ * process, players handed back by a closing stream are kept for a while so the next camera can
+ * reuse them and are released if nobody asks for them.
+ */
+public class VLCPlayerPool {
+
+    private static final String TAG = "VLCPlayerPool";
+    private static final int MAX_IDLE_PLAYERS = 3;
+    private static final long IDLE_RELEASE_DELAY = 60000;
+
+    private static VLCPlayerPool instance;
+
+    private final LibVLC libVLC;
+    private final ArrayDeque<MediaPlayer> idlePlayers = new ArrayDeque<>();
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable releaseIdlePlayersRunnable = this::releaseIdlePlayers;
+
+    /**
+     * Constructor for VLCPlayerPool, initializes the shared LibVLC instance
+     * @param context Application context
+     */
+    private VLCPlayerPool(Context context) {
+        ArrayList<String> options = new ArrayList<>();
+        options.add("-vvv"); // Used to enable verbose logging for VLC
+        libVLC = new LibVLC(context, options);
+    }
+
+    /**
+     * Get the process-wide pool, creating LibVLC on first use
+     * @param context Any context, the application context is retained
+     * @return VLCPlayerPool instance
+     */
+    public static synchronized VLCPlayerPool getInstance(Context context) {
+        if (instance == null) {
+            instance = new VLCPlayerPool(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Get the shared LibVLC instance, used to create Media objects
+     * @return Shared LibVLC
+     */
+    public LibVLC getLibVLC() {
+        return libVLC;
+    }
+
+    /**
+     * Creates the Media for a camera stream with the options every player uses
+     * @param path Stream URL to play
+     * @param networkCaching Network caching in milliseconds
+     * @param username Username for locked cameras, null if none
+     * @param password Password for locked cameras, null if none
+     * @return Media the caller has to release once it was handed to a player
+     */
+    public Media createMedia(String path, int networkCaching, String username, String password) {
+        return createMedia(path, networkCaching, username, password, true);
+    }
+
+    /**
+     * Creates the Media for a camera stream with the options every player uses
+     * @param path Stream URL to play
+     * @param networkCaching Network caching in milliseconds
+     * @param username Username for locked cameras, null if none
+     * @param password Password for locked cameras, null if none
+     * @param hardwareDecoding True to decode with MediaCodec, false to decode in software
+     * @return Media the caller has to release once it was handed to a player
+     */
+    public Media createMedia(String path, int networkCaching, String username, String password,
+                             boolean hardwareDecoding) {
+        return createMedia(path, networkCaching, username, password, hardwareDecoding, false);
+    }
+
+    /**
+     * Creates the Media for a camera stream with the options every player uses
+     * @param path Stream URL to play
+     * @param networkCaching Network caching in milliseconds
+     * @param username Username for locked cameras, null if none
+     * @param password Password for locked cameras, null if none
+     * @param hardwareDecoding True to decode with MediaCodec, false to decode in software
+     * @param forceHardware True to keep VLC from silently switching to software when MediaCodec
+     *                      rejects the stream, so the failure shows up as missing pictures instead
+     * @return Media the caller has to release once it was handed to a player
+     */
+    public Media createMedia(String path, int networkCaching, String username, String password,
+                             boolean hardwareDecoding, boolean forceHardware) {
+        Media media = new Media(libVLC, Uri.parse(path));
+        media.setHWDecoderEnabled(hardwareDecoding, hardwareDecoding && forceHardware);
+        media.addOption(":file-caching=" + networkCaching);
+        media.addOption(":network-caching=" + networkCaching);
+        media.addOption(":clock-jitter=0");
+        media.addOption(":clock-synchro=0");
+
+        // authentication for locked cameras
+        if (username != null && password != null) {
+            media.addOption(":rtsp-user=" + username);
+            media.addOption(":rtsp-pwd=" + password);
+        }
+        return media;
+    }
+
+    /**
+     * Take a player from the pool, a new one is created if none are idle
+     * @return MediaPlayer with no media, listener or views attached
+     */
+    public synchronized MediaPlayer acquire() {
+        MediaPlayer mediaPlayer = idlePlayers.poll();
+        if (mediaPlayer == null) {
+            Log.d(TAG, "Creating media player");
+            mediaPlayer = new MediaPlayer(libVLC);
+        }
+        if (idlePlayers.isEmpty()) {
+            handler.removeCallbacks(releaseIdlePlayersRunnable);
+        }
+        return mediaPlayer;
+    }
+
+    /**
+     * Hand a player back to the pool. Playback is stopped and views are detached, the player is
+     * released right away if the pool is full or later if it stays unused
+     * @param mediaPlayer Player previously returned by acquire()
+     */
+    public synchronized void release(MediaPlayer mediaPlayer) {
+        mediaPlayer.setEventListener(null);
+        mediaPlayer.stop();
+        IVLCVout vlcVout = mediaPlayer.getVLCVout();
+        vlcVout.detachViews();
+
+        if (idlePlayers.size() >= MAX_IDLE_PLAYERS) {
+            mediaPlayer.release();
+            return;
+        }
+        idlePlayers.push(mediaPlayer);
+        handler.removeCallbacks(releaseIdlePlayersRunnable);
+        handler.postDelayed(releaseIdlePlayersRunnable, IDLE_RELEASE_DELAY);
+    }
+
+    /**
+     * Releases every player that is still idle in the pool
+     */
+    private synchronized void releaseIdlePlayers() {
+        Log.d(TAG, "Releasing " + idlePlayers.size() + " idle media players");
+        while (!idlePlayers.isEmpty()) {
+            idlePlayers.poll().release();
+        }
+    }
+}
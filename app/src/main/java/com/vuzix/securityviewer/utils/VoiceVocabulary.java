@@ -0,0 +1,220 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import com.vuzix.sdk.speechrecognitionservice.VuzixSpeechClient;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Keeps the phrases of the speech recognizer in sync with the app without rebuilding the whole
+ * vocabulary. One vocabulary serves every screen: the wake and voice off phrases, the stream
+ * commands and the camera phrases of the home screen, so moving between screens changes nothing.
+ * The installed phrase set and its hash are persisted, and a new set only costs one IPC call per
+ * added or removed phrase. The vocabulary is only wiped when the fixed phrases change or nothing
+ * was persisted yet.
+ */
+public class VoiceVocabulary {
+
+    private static final String TAG = "VoiceVocabulary";
+    private static final String PREF_FIXED_HASH = "voiceVocabularyFixedHash";
+    private static final String PREF_PHRASES = "voiceVocabularyPhrases";
+    private static final String PREF_PHRASES_HASH = "voiceVocabularyPhrasesHash";
+    private static final String SEPARATOR = "\t";
+
+    private static final String[] WAKE_WORD_PHRASES = {
+            "hello vuzix",              // Default phrase, kept for consistency
+            "start security viewer",
+            "hey blade"};
+    private static final String[] VOICE_OFF_PHRASES = {
+            "voice off",                // Default phrase, kept for consistency
+            "privacy please"};
+    public static final String PHRASE_LISTEN_IN = "listen in";
+    public static final String PHRASE_MUTE_CAMERA = "mute camera";
+    public static final String PHRASE_NEXT_CAMERA = "next camera";
+    public static final String PHRASE_PREVIOUS_CAMERA = "previous camera";
+    private static final String[] COMMAND_PHRASES = {
+            PHRASE_LISTEN_IN, PHRASE_MUTE_CAMERA, PHRASE_NEXT_CAMERA, PHRASE_PREVIOUS_CAMERA};
+
+    private static VoiceVocabulary instance;
+
+    private final SharedPreferences preferences;
+    private VuzixSpeechClient speechClient;
+
+    /**
+     * Constructor for VoiceVocabulary
+     * @param context Application context
+     */
+    private VoiceVocabulary(Context context) {
+        preferences = PreferenceManager.getDefaultSharedPreferences(context);
+        try {
+            speechClient = new VuzixSpeechClient(context);
+        } catch (Exception e) {
+            Log.e(TAG, "Speech recognizer unavailable: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Get the process-wide vocabulary
+     * @param context Any context, the application context is retained
+     * @return VoiceVocabulary instance
+     */
+    public static synchronized VoiceVocabulary getInstance(Context context) {
+        if (instance == null) {
+            instance = new VoiceVocabulary(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    /**
+     * Makes sure the fixed phrases and stream commands are installed, keeping whatever camera
+     * phrases are installed. Runs on the BACKGROUND lane
+     */
+    public void syncCommandPhrases() {
+        AppExecutors.getInstance().submit(AppExecutors.Lane.BACKGROUND, () -> apply(null));
+    }
+
+    /**
+     * Replaces the camera phrases, only the difference to the installed phrases is sent to the
+     * recognizer. Runs on the BACKGROUND lane
+     * @param cameraPhrases Camera phrases mapped to their substitutions
+     */
+    public void syncCameraPhrases(Map<String, String> cameraPhrases) {
+        AppExecutors.getInstance().submit(AppExecutors.Lane.BACKGROUND, () -> apply(cameraPhrases));
+    }
+
+    /**
+     * Computes the wanted phrase set and applies the difference to the installed one
+     * @param cameraPhrases Camera phrases mapped to their substitutions, null to keep the installed ones
+     */
+    private synchronized void apply(Map<String, String> cameraPhrases) {
+        if (speechClient == null) {
+            return;
+        }
+        int fixedHash = Arrays.hashCode(WAKE_WORD_PHRASES) * 31 + Arrays.hashCode(VOICE_OFF_PHRASES);
+        boolean installed = preferences.getInt(PREF_FIXED_HASH, 0) == fixedHash
+                && preferences.contains(PREF_PHRASES);
+        Set<String> installedEntries = installed
+                ? new HashSet<>(preferences.getStringSet(PREF_PHRASES, Collections.emptySet()))
+                : new HashSet<>();
+
+        Set<String> wantedEntries = new HashSet<>();
+        for (String phrase : COMMAND_PHRASES) {
+            wantedEntries.add(toEntry(phrase, null));
+        }
+        if (cameraPhrases == null) {
+            wantedEntries.addAll(installedEntries);
+        } else {
+            for (Map.Entry<String, String> cameraPhrase : cameraPhrases.entrySet()) {
+                wantedEntries.add(toEntry(cameraPhrase.getKey(), cameraPhrase.getValue()));
+            }
+        }
+        int wantedHash = hashEntries(wantedEntries);
+        if (installed && preferences.getInt(PREF_PHRASES_HASH, 0) == wantedHash) {
+            return;
+        }
+
+        try {
+            if (!installed) {
+                speechClient.deletePhrase("*");
+                for (String phrase : WAKE_WORD_PHRASES) {
+                    speechClient.insertWakeWordPhrase(phrase);
+                }
+                for (String phrase : VOICE_OFF_PHRASES) {
+                    speechClient.insertVoiceOffPhrase(phrase);
+                }
+            }
+            int removed = 0;
+            for (String entry : installedEntries) {
+                if (!wantedEntries.contains(entry)) {
+                    speechClient.deletePhrase(entry.split(SEPARATOR, -1)[0]);
+                    removed++;
+                }
+            }
+            int added = 0;
+            for (String entry : wantedEntries) {
+                if (!installedEntries.contains(entry)) {
+                    String[] parts = entry.split(SEPARATOR, -1);
+                    if (parts[1].isEmpty()) {
+                        speechClient.insertPhrase(parts[0]);
+                    } else {
+                        speechClient.insertPhrase(parts[0], parts[1]);
+                    }
+                    added++;
+                }
+            }
+            preferences.edit()
+                    .putInt(PREF_FIXED_HASH, fixedHash)
+                    .putStringSet(PREF_PHRASES, wantedEntries)
+                    .putInt(PREF_PHRASES_HASH, wantedHash)
+                    .apply();
+            Log.d(TAG, "Vocabulary synced" + (installed ? "" : " from scratch") + ", added: " + added
+                    + " removed: " + removed);
+        } catch (Exception e) {
+            // The recognizer is in an unknown state, start over next time
+            preferences.edit().remove(PREF_FIXED_HASH).remove(PREF_PHRASES).remove(PREF_PHRASES_HASH).apply();
+            Log.e(TAG, "Could not sync vocabulary: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Encodes a phrase and its substitution as one persisted entry
+     * @param phrase Phrase the user speaks
+     * @param substitution Substitution sent instead of the phrase, null for none
+     * @return Entry for the phrase set
+     */
+    private String toEntry(String phrase, String substitution) {
+        return phrase + SEPARATOR + (substitution == null ? "" : substitution);
+    }
+
+    /**
+     * Hashes a phrase set independently of its iteration order
+     * @param entries Entries of the phrase set
+     * @return Hash of the phrase set
+     */
+    private int hashEntries(Set<String> entries) {
+        List<String> sortedEntries = new ArrayList<>(entries);
+        Collections.sort(sortedEntries);
+        return sortedEntries.hashCode();
+    }
+}
@@ -0,0 +1,319 @@
+/*
+Copyright (c) 2019, Vuzix Corporation
+All rights reserved.
+
+Redistribution and use in source and binary forms, with or without
+modification, are permitted provided that the following conditions
+are met:
+
+*  Redistributions of source code must retain the above copyright
+   notice, this list of conditions and the following disclaimer.
+
+*  Redistributions in binary form must reproduce the above copyright
+   notice, this list of conditions and the following disclaimer in the
+   documentation and/or other materials provided with the distribution.
+
+*  Neither the name of Vuzix Corporation nor the names of
+   its contributors may be used to endorse or promote products derived
+   from this software without specific prior written permission.
+
+THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO,
+THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR
+PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS;
+OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR
+OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE,
+EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package com.vuzix.securityviewer.utils;
+
+import android.content.Context;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+import com.vuzix.securityviewer.CamerasDatabase;
+import com.vuzix.securityviewer.model.Camera;
+import com.vuzix.securityviewer.model.StreamCache;
+import com.vuzix.securityviewer.onvif.StreamEndpointResolver;
+
+import org.videolan.libvlc.Media;
+import org.videolan.libvlc.MediaPlayer;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Keeps the cameras next to the one on screen connected on their own players so switching to
+ * them only moves the surface over. Standby players are muted and have their video track
+ * disabled, the RTSP session stays up but nothing is decoded or rendered until they are taken.
+ * All methods have to be called on the main thread.
+ */
+public class WarmStandby {
+
+    private static final String TAG = "WarmStandby";
+
+    private final CamerasDatabase database;
+    private final TaskScope tasks;
+    private final VLCPlayerPool playerPool;
+    private final MediaProfileSelector profileSelector;
+    private final Map<Integer, StandbyStream> standbyStreams = new HashMap<>();
+
+    /**
+     * Constructor for WarmStandby
+     * @param context Context used to reach the player pool and the display metrics
+     * @param database Database holding the stream cache
+     * @param tasks Scope of the owning activity, standby work stops when it is cancelled
+     */
+    public WarmStandby(Context context, CamerasDatabase database, TaskScope tasks) {
+        this.database = database;
+        this.tasks = tasks;
+        this.playerPool = VLCPlayerPool.getInstance(context);
+        DisplayMetrics displayMetrics = context.getResources().getDisplayMetrics();
+        this.profileSelector = new MediaProfileSelector(displayMetrics.widthPixels, displayMetrics.heightPixels);
+    }
+
+    /**
+     * Connects every camera in the list that is not on standby yet and releases the standby players
+     * of cameras no longer in it
+     * @param cameras Cameras that should be on standby
+     */
+    public void prepare(List<Camera> cameras) {
+        List<Integer> keepUIDs = new ArrayList<>();
+        for (Camera camera : cameras) {
+            keepUIDs.add(camera.getUID());
+        }
+        for (Integer uid : new ArrayList<>(standbyStreams.keySet())) {
+            if (!keepUIDs.contains(uid)) {
+                release(standbyStreams.remove(uid));
+            }
+        }
+        for (Camera camera : cameras) {
+            if (!standbyStreams.containsKey(camera.getUID())) {
+                StandbyStream standbyStream = new StandbyStream(camera, playerPool.acquire());
+                standbyStreams.put(camera.getUID(), standbyStream);
+                tasks.run(AppExecutors.Lane.BACKGROUND, () -> loadStreamURL(standbyStream));
+            }
+        }
+    }
+
+    /**
+     * Takes the standby stream of a camera out of standby. The caller owns its player from now on
+     * and has to attach its views and enable the video track
+     * @param cameraUID UID of the camera to switch to
+     * @return Playing standby stream, null if the camera is not connected yet
+     */
+    public StandbyStream take(int cameraUID) {
+        StandbyStream standbyStream = standbyStreams.remove(cameraUID);
+        if (standbyStream == null) {
+            return null;
+        }
+        if (!standbyStream.isPlaying()) {
+            release(standbyStream);
+            return null;
+        }
+        standbyStream.getMediaPlayer().setEventListener(null);
+        return standbyStream;
+    }
+
+    /**
+     * Puts a player that was on screen on standby, used for the camera that was just switched away
+     * from. Its views have to be detached already
+     * @param camera Camera the player is connected to
+     * @param mediaPlayer Playing player
+     * @param streamUri Stream URI the player is connected to
+     * @param networkCaching Network caching the stream was opened with
+     * @param hardwareDecoding True if the stream was opened with the hardware decoder
+     */
+    public void adopt(Camera camera, MediaPlayer mediaPlayer, String streamUri, int networkCaching,
+                      boolean hardwareDecoding) {
+        StandbyStream previous = standbyStreams.remove(camera.getUID());
+        if (previous != null) {
+            release(previous);
+        }
+        StandbyStream standbyStream = new StandbyStream(camera, mediaPlayer);
+        standbyStream.setStreamUri(streamUri);
+        standbyStream.setNetworkCaching(networkCaching);
+        standbyStream.setHardwareDecoding(hardwareDecoding);
+        standbyStream.setPlaying(true);
+        mediaPlayer.setEventListener(standbyStream);
+        standbyStream.moveToBackground();
+        standbyStreams.put(camera.getUID(), standbyStream);
+    }
+
+    /**
+     * Hands every standby player back to the pool
+     */
+    public void releaseAll() {
+        for (StandbyStream standbyStream : standbyStreams.values()) {
+            release(standbyStream);
+        }
+        standbyStreams.clear();
+    }
+
+    /**
+     * Looks up the stream URI of a standby camera, the cached one is used when present otherwise the
+     * camera is asked. Runs on the background lane so it never holds up the stream on screen
+     * @param standbyStream Stream to connect
+     */
+    private void loadStreamURL(StandbyStream standbyStream) {
+        Camera camera = standbyStream.getCamera();
+        StreamCache streamCache = database.getStreamCacheDAO().getStreamCache(camera.getUID());
+        int networkCaching = NetworkCachingController.DEFAULT_CACHING;
+        if (streamCache != null && streamCache.getNetworkCaching() >= NetworkCachingController.MIN_CACHING
+                && streamCache.getNetworkCaching() <= NetworkCachingController.MAX_CACHING) {
+            networkCaching = streamCache.getNetworkCaching();
+        }
+        final int cameraNetworkCaching = networkCaching;
+        if (streamCache != null) {
+            standbyStream.setDecoderPath(streamCache.getDecoderPath());
+            standbyStream.setEncoding(streamCache.getEncoding());
+        }
+        if (streamCache != null && streamCache.getStreamUri() != null) {
+            String streamUri = streamCache.getStreamUri();
+            tasks.postToMain(() -> play(standbyStream, streamUri, cameraNetworkCaching, true));
+            return;
+        }
+
+        StreamEndpointResolver resolver = new StreamEndpointResolver(database, camera.getUID(),
+                camera.getHostName(), camera.getUsername(), camera.getPassword(),
+                camera.getStreamProfileToken(), profileSelector);
+        resolver.resolve(new StreamEndpointResolver.StreamEndpointListener() {
+            @Override
+            public void onStreamEndpointResolved(String streamUri) {
+                if (resolver.getEncoding() != null && !resolver.getEncoding().equals(standbyStream.getEncoding())) {
+                    standbyStream.setEncoding(resolver.getEncoding());
+                    standbyStream.setDecoderPath(DecoderPolicy.DECODER_UNKNOWN);
+                }
+                tasks.postToMain(() -> play(standbyStream, streamUri, cameraNetworkCaching, false));
+            }
+
+            @Override
+            public void onStreamEndpointFailed(int errorCode) {
+                Log.d(TAG, "Could not resolve standby stream of " + camera.getPresentableName() + ": " + errorCode);
+            }
+        });
+    }
+
+    /**
+     * Starts a standby player, skipped if the camera left standby in the meantime
+     * @param standbyStream Stream to start
+     * @param streamUri Stream URI to connect to
+     * @param networkCaching Network caching in milliseconds
+     * @param cached True if the URI came from the stream cache and was not verified with the camera
+     */
+    private void play(StandbyStream standbyStream, String streamUri, int networkCaching, boolean cached) {
+        if (standbyStreams.get(standbyStream.getCamera().getUID()) != standbyStream) {
+            return;
+        }
+        Log.d(TAG, "Connecting standby stream of " + standbyStream.getCamera().getPresentableName());
+        Camera camera = standbyStream.getCamera();
+        standbyStream.setStreamUri(streamUri);
+        standbyStream.setNetworkCaching(networkCaching);
+        standbyStream.setCached(cached);
+        standbyStream.setHardwareDecoding(DecoderPolicy.getInstance().useHardware(standbyStream.getDecoderPath(),
+                standbyStream.getEncoding()));
+        MediaPlayer mediaPlayer = standbyStream.getMediaPlayer();
+        mediaPlayer.setEventListener(standbyStream);
+        Media media = playerPool.createMedia(streamUri, networkCaching, camera.getUsername(),
+                camera.getPassword(), standbyStream.isHardwareDecoding(), true);
+        mediaPlayer.setMedia(media);
+        media.release();
+        mediaPlayer.play();
+    }
+
+    /**
+     * Hands the player of a standby stream back to the pool
+     * @param standbyStream Stream to release
+     */
+    private void release(StandbyStream standbyStream) {
+        Log.d(TAG, "Releasing standby stream of " + standbyStream.getCamera().getPresentableName());
+        playerPool.release(standbyStream.getMediaPlayer());
+    }
+
+    /**
+     * A camera kept connected on its own player while another camera is on screen
+     */
+    public static class StandbyStream implements MediaPlayer.EventListener {
+
+        private final Camera camera;
+        private final MediaPlayer mediaPlayer;
+        private String streamUri;
+        private int networkCaching;
+        private boolean cached = false;
+        private boolean playing = false;
+        private volatile int decoderPath = DecoderPolicy.DECODER_UNKNOWN;
+        private volatile String encoding;
+        private boolean hardwareDecoding = true;
+
+        /**
+         * Constructor for StandbyStream
+         * @param camera Camera the player connects to
+         * @param mediaPlayer Player taken from the pool
+         */
+        StandbyStream(Camera camera, MediaPlayer mediaPlayer) {
+            this.camera = camera;
+            this.mediaPlayer = mediaPlayer;
+        }
+
+        /**
+         * VLC event listener, mutes the stream and stops decoding video once it plays
+         * @param event VLC event that has occurred
+         */
+        @Override
+        public void onEvent(MediaPlayer.Event event) {
+            if (event.type == MediaPlayer.Event.Playing) {
+                playing = true;
+                moveToBackground();
+            } else if (event.type == MediaPlayer.Event.EncounteredError || event.type == MediaPlayer.Event.EndReached) {
+                Log.d(TAG, "Standby stream of " + camera.getPresentableName() + " stopped");
+                playing = false;
+            }
+        }
+
+        /**
+         * Mutes the player and disables its video track so it only keeps the connection up
+         */
+        void moveToBackground() {
+            mediaPlayer.setVolume(0);
+            mediaPlayer.setVideoTrackEnabled(false);
+        }
+
+        public Camera getCamera() { return camera; }
+
+        public MediaPlayer getMediaPlayer() { return mediaPlayer; }
+
+        public String getStreamUri() { return streamUri; }
+
+        void setStreamUri(String streamUri) { this.streamUri = streamUri; }
+
+        public int getNetworkCaching() { return networkCaching; }
+
+        void setNetworkCaching(int networkCaching) { this.networkCaching = networkCaching; }
+
+        public boolean isCached() { return cached; }
+
+        void setCached(boolean cached) { this.cached = cached; }
+
+        public boolean isPlaying() { return playing; }
+
+        void setPlaying(boolean playing) { this.playing = playing; }
+
+        public int getDecoderPath() { return decoderPath; }
+
+        void setDecoderPath(int decoderPath) { this.decoderPath = decoderPath; }
+
+        public String getEncoding() { return encoding; }
+
+        void setEncoding(String encoding) { this.encoding = encoding; }
+
+        public boolean isHardwareDecoding() { return hardwareDecoding; }
+
+        void setHardwareDecoding(boolean hardwareDecoding) { this.hardwareDecoding = hardwareDecoding; }
+    }
+}